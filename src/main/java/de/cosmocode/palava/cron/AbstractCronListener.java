@@ -0,0 +1,53 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Abstract {@link CronListener} which ignores every event. Subclasses
+ * override the callbacks they are interested in.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public abstract class AbstractCronListener implements CronListener {
+    
+    @Override
+    public void beforeFire(CronEvent event) {
+    
+    }
+    
+    @Override
+    public void afterSuccess(CronEvent event) {
+    
+    }
+    
+    @Override
+    public void afterFailure(CronEvent event) {
+    
+    }
+    
+    @Override
+    public void misfired(CronEvent event) {
+    
+    }
+    
+    @Override
+    public void rescheduled(CronEvent event) {
+    
+    }
+
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A named execution group which limits the number of concurrent runs of its jobs.
+ * Runs exceeding the limit wait in a bounded queue and are started as soon
+ * as a permit is released. Permits are accounted using compare and set only,
+ * hence submitting never blocks the calling timer thread and a saturated
+ * bulkhead never delays the runs of other bulkheads.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class Bulkhead {
+    
+    private final String name;
+    
+    private final int limit;
+    
+    private final int capacity;
+    
+    private final AtomicInteger permits;
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+    
+    private final AtomicLong rejected = new AtomicLong();
+    
+    public Bulkhead(String name, int limit, int capacity) {
+        this.name = Preconditions.checkNotNull(name, "Name");
+        Preconditions.checkArgument(limit > 0, "Limit must be positive");
+        Preconditions.checkArgument(capacity >= 0, "Capacity must not be negative");
+        this.limit = limit;
+        this.capacity = capacity;
+        this.permits = new AtomicInteger(limit);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Submits the given task. The task is performed using the given executor as soon as
+     * a permit is available, possibly right away.
+     *
+     * @param task the task to perform
+     * @param executor the executor which performs the task, null to perform it on the thread
+     *        which obtains the permit
+     * @return true if the task has been accepted, false if the queue is full
+     */
+    public boolean submit(Task task, Executor executor) {
+        if (queued.incrementAndGet() > capacity + permits.get()) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        queue.offer(new Entry(task, executor));
+        drain();
+        return true;
+    }
+    
+    private boolean tryAcquire() {
+        while (true) {
+            final int available = permits.get();
+            if (available == 0) {
+                return false;
+            } else if (permits.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Starts queued tasks as long as permits are available. Called after every
+     * submission and release, so a task queued concurrently to a release is never lost.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            final Entry entry = queue.poll();
+            if (entry == null) {
+                permits.incrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            if (entry.executor == null) {
+                try {
+                    entry.task.run();
+                } finally {
+                    permits.incrementAndGet();
+                }
+            } else {
+                try {
+                    entry.executor.execute(entry);
+                } catch (RejectedExecutionException e) {
+                    permits.incrementAndGet();
+                    rejected.incrementAndGet();
+                    entry.task.rejected();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Provides the number of currently running tasks.
+     *
+     * @return the number of used permits
+     */
+    public int getActive() {
+        return limit - permits.get();
+    }
+    
+    /**
+     * Provides the number of waiting tasks.
+     *
+     * @return the number of queued tasks
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+    
+    /**
+     * Provides the number of tasks rejected due to a full queue or a rejecting executor.
+     *
+     * @return the number of rejected tasks
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+    
+    @Override
+    public String toString() {
+        return "Bulkhead [name=" + name + ", active=" + getActive() + "/" + limit + 
+            ", queued=" + getQueued() + "/" + capacity + "]";
+    }
+    
+    /**
+     * A task which can be submitted to a {@link Bulkhead}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    interface Task extends Runnable {
+        
+        /**
+         * Called instead of {@link #run()} if the executor rejected this task.
+         */
+        void rejected();
+    
+    }
+    
+    /**
+     * A queued task with its executor, which releases the permit after the task completed.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private final class Entry implements Runnable {
+        
+        private final Task task;
+        
+        private final Executor executor;
+        
+        public Entry(Task task, Executor executor) {
+            this.task = task;
+            this.executor = executor;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                permits.incrementAndGet();
+                drain();
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * A source of the current time used to compute the next runs of scheduled tasks.
+ * Bind an implementation annotated with {@link Cron} to replace the system clock.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface Clock {
+
+    /**
+     * The {@link System} clock.
+     * 
+     * @since 1.3
+     */
+    Clock SYSTEM = new Clock() {
+        
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+        
+        @Override
+        public String toString() {
+            return "Clock.SYSTEM";
+        }
+        
+    };
+    
+    /**
+     * Provides the current time.
+     * 
+     * @since 1.3
+     * @return the current time in milliseconds since midnight, January 1, 1970 UTC
+     */
+    long currentTimeMillis();
+    
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link TriggerBinding} which provides an arbitrary {@link Trigger}, {@link TriggerOptions}
+ * and an {@link Executor}. Plain trigger bindings are scheduled using the trigger of their
+ * cron expression, the default options and the default {@link Cron} executor.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface ConfiguredTriggerBinding extends TriggerBinding {
+    
+    /**
+     * Provides the trigger associated with this binding.
+     * 
+     * @since 1.3
+     * @return the trigger, never null
+     */
+    Trigger getTrigger();
+    
+    /**
+     * Provides the options associated with this binding.
+     * 
+     * @since 1.3
+     * @return the options, never null
+     */
+    TriggerOptions getOptions();
+    
+    /**
+     * Provides the executor which performs the runs of this binding.
+     * 
+     * @since 1.3
+     * @return the executor or null if the default {@link Cron} executor should be used
+     */
+    Executor getExecutor();
+    
+}
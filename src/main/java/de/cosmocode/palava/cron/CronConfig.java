@@ -30,6 +30,58 @@ final class CronConfig {
     
     public static final String TASK_SHUTDOWN_TIMEOUT_UNIT = PREFIX + "taskShutdownTimeoutUnit";
     
+    public static final String TASK_EXECUTION_TIMEOUT = PREFIX + "taskExecutionTimeout";
+    
+    public static final String TASK_EXECUTION_TIMEOUT_UNIT = PREFIX + "taskExecutionTimeoutUnit";
+    
+    public static final String MISFIRE_THRESHOLD = PREFIX + "misfireThreshold";
+    
+    public static final String MISFIRE_THRESHOLD_UNIT = PREFIX + "misfireThresholdUnit";
+    
+    public static final String EVENTS_LEVEL = PREFIX + "events.level";
+    
+    public static final String EVENTS_SAMPLE_RATE = PREFIX + "events.sampleRate";
+    
+    public static final String EVENTS_RATE_LIMIT = PREFIX + "events.rateLimit";
+    
+    public static final String RELOAD_FILE = PREFIX + "reload.file";
+    
+    public static final String RELOAD_INTERVAL = PREFIX + "reload.interval";
+    
+    public static final String RELOAD_INTERVAL_UNIT = PREFIX + "reload.intervalUnit";
+    
+    public static final String SNAPSHOT_FILE = PREFIX + "snapshot.file";
+    
+    public static final String WORKERS_SIZE = PREFIX + "workers.size";
+    
+    public static final String WORKERS_MIN = PREFIX + "workers.min";
+    
+    public static final String WORKERS_MAX = PREFIX + "workers.max";
+    
+    public static final String WORKERS_TUNING_INTERVAL = PREFIX + "workers.tuningInterval";
+    
+    public static final String WORKERS_TUNING_INTERVAL_UNIT = PREFIX + "workers.tuningIntervalUnit";
+    
+    public static final String WORKERS_WAIT_THRESHOLD = PREFIX + "workers.waitThreshold";
+    
+    public static final String WORKERS_WAIT_THRESHOLD_UNIT = PREFIX + "workers.waitThresholdUnit";
+    
+    public static final String MANAGEMENT_NAME = PREFIX + "management.name";
+    
+    public static final String LISTENERS_CAPACITY = PREFIX + "listeners.capacity";
+    
+    public static final String HOT_MINUTE_THRESHOLD = PREFIX + "hotMinuteThreshold";
+    
+    public static final String PRECISION_SPIN = PREFIX + "precision.spin";
+    
+    public static final String PRECISION_SPIN_UNIT = PREFIX + "precision.spinUnit";
+    
+    public static final String FAIRNESS_CONCURRENCY = PREFIX + "fairness.concurrency";
+    
+    public static final String DEDUP_FILE = PREFIX + "dedup.file";
+    
+    public static final String DEDUP_CAPACITY = PREFIX + "dedup.capacity";
+    
     private CronConfig() {
         
     }
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable scheduling event of a single job, published to a {@link CronEventSink}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class CronEvent {
+    
+    /**
+     * The type of a {@link CronEvent}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    public static enum Type {
+        
+        /**
+         * The job has been scheduled for its first run. The value is the delay in milliseconds.
+         */
+        SCHEDULED,
+        
+        /**
+         * A run of the job has been started. The value is always 0.
+         */
+        FIRED,
+        
+        /**
+         * A run of the job finished normally. The value is the duration in milliseconds.
+         */
+        FINISHED,
+        
+        /**
+         * A run of the job failed. The value is the duration in milliseconds.
+         */
+        FAILED,
+        
+        /**
+         * The job has been scheduled for its next run. The value is the delay in milliseconds.
+         */
+        RESCHEDULED,
+        
+        /**
+         * A run of the job started later than the misfire threshold allows.
+         * The value is the lateness in milliseconds.
+         */
+        MISFIRED;
+    
+    }
+    
+    private final Type type;
+    
+    private final String jobId;
+    
+    private final String jobName;
+    
+    private final long run;
+    
+    private final long time;
+    
+    private final long value;
+    
+    private final Throwable throwable;
+    
+    private final FiringToken token;
+    
+    /**
+     * Creates a new {@link CronEvent}.
+     * 
+     * @param type the event type
+     * @param jobId the id of the job
+     * @param jobName the name of the job, may be null
+     * @param run the number of the run this event belongs to, starting at 1, 0 before the first run
+     * @param time the time of the event in milliseconds since the epoch
+     * @param value the delay or duration in milliseconds, depending on type
+     * @param throwable the cause of a failure, may be null
+     * @throws NullPointerException if type or jobId is null
+     */
+    public CronEvent(Type type, String jobId, String jobName, long run, long time, long value, Throwable throwable) {
+        this(type, jobId, jobName, run, time, value, throwable, null);
+    }
+    
+    /**
+     * Creates a new {@link CronEvent}.
+     * 
+     * @since 1.3
+     * @param type the event type
+     * @param jobId the id of the job
+     * @param jobName the name of the job, may be null
+     * @param run the number of the run this event belongs to, starting at 1, 0 before the first run
+     * @param time the time of the event in milliseconds since the epoch
+     * @param value the delay or duration in milliseconds, depending on type
+     * @param throwable the cause of a failure, may be null
+     * @param token the token of the firing this event belongs to, may be null
+     * @throws NullPointerException if type or jobId is null
+     */
+    public CronEvent(Type type, String jobId, String jobName, long run, long time, long value, Throwable throwable,
+        FiringToken token) {
+        this.type = Preconditions.checkNotNull(type, "Type");
+        this.jobId = Preconditions.checkNotNull(jobId, "JobId");
+        this.jobName = jobName;
+        this.run = run;
+        this.time = time;
+        this.value = value;
+        this.throwable = throwable;
+        this.token = token;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getJobId() {
+        return jobId;
+    }
+    
+    /**
+     * Provides the name of the job.
+     * 
+     * @return the name or null if the job has no name
+     */
+    public String getJobName() {
+        return jobName;
+    }
+    
+    /**
+     * Provides the number of the run this event belongs to.
+     * 
+     * @return the run number, starting at 1, or 0 if the job did not run yet
+     */
+    public long getRun() {
+        return run;
+    }
+    
+    /**
+     * Provides the time of this event.
+     * 
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+    
+    /**
+     * Provides the delay or duration of this event, see {@link Type}.
+     * 
+     * @return the value in milliseconds
+     */
+    public long getValue() {
+        return value;
+    }
+    
+    /**
+     * Provides the cause of a {@link Type#FAILED} event.
+     * 
+     * @return the throwable or null
+     */
+    public Throwable getThrowable() {
+        return throwable;
+    }
+    
+    /**
+     * Provides the token of the firing this event belongs to. Scheduling events
+     * carry the token of the upcoming firing.
+     * 
+     * @since 1.3
+     * @return the token or null if unknown
+     */
+    public FiringToken getToken() {
+        return token;
+    }
+    
+    @Override
+    public String toString() {
+        return "CronEvent [type=" + type + ", jobId=" + jobId + ", jobName=" + jobName + ", run=" + run + 
+            ", time=" + time + ", value=" + value + ", token=" + token + "]";
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * A sink for {@link CronEvent}s. Bind an implementation annotated with
+ * {@link Cron} to receive the scheduling events of the {@link CronService}.
+ * If no sink is bound, no events will be created at all.
+ *
+ * <p>
+ *   Sinks are called synchronously on the thread which caused the event,
+ *   implementations should return quickly.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface CronEventSink {
+
+    /**
+     * Publishes the specified event.
+     * 
+     * @since 1.3
+     * @param event the event
+     */
+    void publish(CronEvent event);
+    
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Listener for the lifecycle of scheduled jobs. Register implementations using
+ * {@link CronModule#listen(Class)} or a {@link com.google.inject.multibindings.Multibinder}
+ * of {@link CronListener}s.
+ *
+ * <p>
+ *   Listeners are notified asynchronously on a dedicated thread in the order the
+ *   events occurred, using a bounded queue. Slow listeners therefore never delay
+ *   any run, but events are dropped if the queue is full.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ * @see AbstractCronListener
+ */
+public interface CronListener {
+    
+    /**
+     * Called when a run of a job has been started.
+     * 
+     * @since 1.3
+     * @param event the {@link CronEvent.Type#FIRED} event
+     */
+    void beforeFire(CronEvent event);
+    
+    /**
+     * Called when a run of a job finished normally.
+     * 
+     * @since 1.3
+     * @param event the {@link CronEvent.Type#FINISHED} event, carrying the duration
+     */
+    void afterSuccess(CronEvent event);
+    
+    /**
+     * Called when a run of a job failed.
+     * 
+     * @since 1.3
+     * @param event the {@link CronEvent.Type#FAILED} event, carrying the duration and the cause
+     */
+    void afterFailure(CronEvent event);
+    
+    /**
+     * Called when a run of a job started later than the misfire threshold allows.
+     * 
+     * @since 1.3
+     * @param event the {@link CronEvent.Type#MISFIRED} event, carrying the lateness
+     */
+    void misfired(CronEvent event);
+    
+    /**
+     * Called when a job has been scheduled for its next run.
+     * 
+     * @since 1.3
+     * @param event the {@link CronEvent.Type#RESCHEDULED} event, carrying the delay
+     */
+    void rescheduled(CronEvent event);
+
+}
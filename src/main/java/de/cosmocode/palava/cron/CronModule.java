@@ -17,6 +17,8 @@
 package de.cosmocode.palava.cron;
 
 import java.lang.annotation.Annotation;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.quartz.CronExpression;
 
@@ -25,6 +27,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Key;
 import com.google.inject.Provider;
 import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.MapBinder;
 import com.google.inject.multibindings.Multibinder;
 
 /**
@@ -67,6 +70,63 @@ public abstract class CronModule extends AbstractModule {
         return new InternalBuilder(key);
     }
     
+    /**
+     * Defines a bulkhead, a named execution group with its own concurrency limit
+     * and queue. Runs of bindings assigned to a saturated bulkhead wait in its queue
+     * without affecting any other binding.
+     * 
+     * @since 1.3
+     * @param name the name of the bulkhead, see {@link TriggerBindingBuilder#inBulkhead(String)}
+     * @param limit the maximum number of concurrent runs
+     * @param capacity the maximum number of waiting runs, runs exceeding it are skipped
+     * @throws NullPointerException if name is null
+     * @throws IllegalArgumentException if limit is not positive or capacity is negative
+     */
+    protected final void bulkhead(String name, int limit, int capacity) {
+        final Bulkhead bulkhead = new Bulkhead(name, limit, capacity);
+        Multibinder.newSetBinder(binder(), Bulkhead.class).addBinding().toInstance(bulkhead);
+    }
+    
+    /**
+     * Defines the weight of a tenant, which is the number of runs the tenant may dispatch
+     * per round when runs of several tenants are waiting. Tenants default to a weight of 1.
+     * 
+     * @since 1.3
+     * @param name the name of the tenant, see {@link TriggerBindingBuilder#forTenant(String)}
+     * @param weight the weight
+     * @throws NullPointerException if name is null
+     * @throws IllegalArgumentException if weight is not positive
+     */
+    protected final void tenant(String name, int weight) {
+        Preconditions.checkNotNull(name, "Name");
+        Preconditions.checkArgument(weight > 0, "Weight must be positive");
+        MapBinder.newMapBinder(binder(), String.class, Integer.class, Cron.class).addBinding(name).toInstance(weight);
+    }
+    
+    /**
+     * Registers a {@link CronListener} which will be notified about the lifecycle of all jobs.
+     * 
+     * @since 1.3
+     * @param type the listener type
+     * @throws NullPointerException if type is null
+     */
+    protected final void listen(Class<? extends CronListener> type) {
+        Preconditions.checkNotNull(type, "Type");
+        Multibinder.newSetBinder(binder(), CronListener.class).addBinding().to(type);
+    }
+    
+    /**
+     * Registers a {@link CronListener} which will be notified about the lifecycle of all jobs.
+     * 
+     * @since 1.3
+     * @param listener the listener
+     * @throws NullPointerException if listener is null
+     */
+    protected final void listen(CronListener listener) {
+        Preconditions.checkNotNull(listener, "Listener");
+        Multibinder.newSetBinder(binder(), CronListener.class).addBinding().toInstance(listener);
+    }
+    
     /**
      * Internal implementation of the {@link AnnotatedTriggerBindingBuilder} interface.
      *
@@ -75,11 +135,101 @@ public abstract class CronModule extends AbstractModule {
     private final class InternalBuilder implements AnnotatedTriggerBindingBuilder {
         
         private final Key<? extends Runnable> commandKey;
+        
+        private TriggerOptions options = TriggerOptions.defaults();
+        
+        private Key<? extends Executor> executorKey;
 
         public InternalBuilder(Key<? extends Runnable> commandKey) {
             this.commandKey = Preconditions.checkNotNull(commandKey, "CommandKey");
         }
         
+        @Override
+        public TriggerBindingBuilder timeout(long duration, TimeUnit unit) {
+            options = options.withTimeout(duration, unit);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder named(String name) {
+            options = options.withName(name);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder inGroup(String group) {
+            options = options.withGroup(group);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder tagged(String... tags) {
+            options = options.withTags(tags);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder excluding(ExclusionCalendar calendar) {
+            options = options.withExclusions(calendar);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder onMisfire(MisfirePolicy policy) {
+            options = options.withMisfirePolicy(policy);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder misfireThreshold(long duration, TimeUnit unit) {
+            options = options.withMisfireThreshold(duration, unit);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder replayInterval(long duration, TimeUnit unit) {
+            options = options.withReplayInterval(duration, unit);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder executedBy(Annotation annotation) {
+            Preconditions.checkNotNull(annotation, "Annotation");
+            executorKey = Key.get(Executor.class, annotation);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder executedBy(Class<? extends Annotation> annotationType) {
+            Preconditions.checkNotNull(annotationType, "AnnotationType");
+            executorKey = Key.get(Executor.class, annotationType);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder inBulkhead(String name) {
+            options = options.withBulkhead(name);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder highResolution() {
+            options = options.withHighResolution();
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder forTenant(String name) {
+            options = options.withTenant(name);
+            return this;
+        }
+        
+        @Override
+        public TriggerBindingBuilder mutuallyExclusive(String... groups) {
+            options = options.withExclusionGroups(groups);
+            return this;
+        }
+        
         @Override
         public TriggerBindingBuilder annotatedWith(Annotation annotation) {
             Preconditions.checkNotNull(annotation, "Annotation");
@@ -97,7 +247,7 @@ public abstract class CronModule extends AbstractModule {
             Preconditions.checkNotNull(expression, "Expression");
             Preconditions.checkArgument(CronExpression.isValidExpression(expression), "%s is not valid", expression);
             final Provider<? extends Runnable> provider = getProvider(commandKey);
-            final TriggerBinding binding = TriggerBindings.of(provider, expression);
+            final TriggerBinding binding = TriggerBindings.of(provider, expression, options);
             bind(binding);
         }
         
@@ -113,15 +263,38 @@ public abstract class CronModule extends AbstractModule {
             using(Key.get(CronExpression.class, annotationType));
         }
         
+        @Override
+        public void using(Trigger trigger) {
+            Preconditions.checkNotNull(trigger, "Trigger");
+            final Provider<? extends Runnable> command = getProvider(commandKey);
+            bind(TriggerBindings.of(command, trigger, options));
+        }
+        
+        @Override
+        public void atFixedRate(long period, TimeUnit unit) {
+            using(Triggers.fixedRate(period, unit));
+        }
+        
+        @Override
+        public void withFixedDelay(long delay, TimeUnit unit) {
+            using(Triggers.fixedDelay(delay, unit));
+        }
+        
         private void using(Key<? extends CronExpression> expressionKey) {
             final Provider<? extends Runnable> command = getProvider(commandKey);
             final Provider<? extends CronExpression> expression = getProvider(expressionKey);
-            final TriggerBinding binding = TriggerBindings.of(command, expression);
+            final TriggerBinding binding = TriggerBindings.of(command, expression, options);
             bind(binding);
         }
         
         private void bind(TriggerBinding binding) {
-            Multibinder.newSetBinder(binder(), TriggerBinding.class).addBinding().toInstance(binding);
+            final TriggerBinding target;
+            if (executorKey == null) {
+                target = binding;
+            } else {
+                target = TriggerBindings.executedBy(binding, getProvider(executorKey));
+            }
+            Multibinder.newSetBinder(binder(), TriggerBinding.class).addBinding().toInstance(target);
         }
         
     }
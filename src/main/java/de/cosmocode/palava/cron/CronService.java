@@ -16,9 +16,20 @@
 
 package de.cosmocode.palava.cron;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * A simple service to schedule tasks in a cron-lile fashion.
  *
+ * <p>
+ *   Every scheduled job is identified by an id which is unique within the running
+ *   service only. Ids are assigned in order of scheduling and differ between restarts,
+ *   use {@link TriggerOptions#withName(String) names} to identify jobs across restarts.
+ *   Jobs therefore have to be named if a {@link DedupStore} is bound.
+ * </p>
+ *
  * @since 1.2
  * @author Willi Schoenborn
  */
@@ -31,7 +42,201 @@ public interface CronService {
      * @param task the task to be executed
      * @param expression the cron expression
      * @throws IllegalArgumentException if expression is no valid cron expression
+     *         or a {@link DedupStore} is bound
      */
     void schedule(Runnable task, String expression);
     
+    /**
+     * Schedules the given task using the specified cron expression and options.
+     *
+     * @since 1.3
+     * @param task the task to be executed
+     * @param expression the cron expression
+     * @param options the options used for every run of task
+     * @return the id of the scheduled job, unique within this service
+     * @throws IllegalArgumentException if expression is no valid cron expression
+     *         or options has no name while a {@link DedupStore} is bound
+     */
+    String schedule(Runnable task, String expression, TriggerOptions options);
+    
+    /**
+     * Schedules the given task using the specified trigger and options.
+     *
+     * @since 1.3
+     * @param task the task to be executed
+     * @param trigger the trigger, see {@link Triggers}
+     * @param options the options used for every run of task
+     * @return the id of the scheduled job, unique within this service
+     * @throws NullPointerException if task, trigger or options is null
+     * @throws IllegalArgumentException if options has no name while a {@link DedupStore} is bound
+     */
+    String schedule(Runnable task, Trigger trigger, TriggerOptions options);
+    
+    /**
+     * Schedules all given tasks using their associated cron expressions. All expressions
+     * are validated before any task is scheduled, i.e. either all or none of the given
+     * tasks will be scheduled. The same task may occur multiple times with different
+     * expressions, e.g. using {@link com.google.common.collect.Maps#immutableEntry(Object, Object)}.
+     *
+     * @since 1.3
+     * @param tasks pairs of tasks to be executed and their cron expressions
+     * @param options the options used for every run of all tasks
+     * @return the ids of the scheduled jobs in order of the given tasks, which includes
+     *         jobs whose expression will never be satisfied
+     * @throws NullPointerException if tasks or options is null or tasks contains null keys or values
+     * @throws IllegalArgumentException if at least one expression is no valid cron expression
+     *         or options has no name while a {@link DedupStore} is bound
+     */
+    List<String> scheduleAll(Iterable<? extends Map.Entry<? extends Runnable, String>> tasks,
+        TriggerOptions options);
+    
+    /**
+     * Cancels all tasks scheduled with the specified group. Currently running
+     * executions will not be interrupted but won't be rescheduled.
+     *
+     * @since 1.3
+     * @param group the group, see {@link TriggerOptions#withGroup(String)}
+     * @return the number of cancelled tasks
+     * @throws NullPointerException if group is null
+     */
+    int cancelGroup(String group);
+    
+    /**
+     * Provides the ids of all scheduled jobs in the specified group.
+     *
+     * @since 1.3
+     * @param group the group
+     * @return an immutable snapshot of the job ids in group, may be empty
+     * @throws NullPointerException if group is null
+     */
+    Set<String> getGroup(String group);
+    
+    /**
+     * Provides the ids of all scheduled jobs tagged with the specified tag.
+     *
+     * @since 1.3
+     * @param tag the tag
+     * @return an immutable snapshot of the job ids tagged with tag, may be empty
+     * @throws NullPointerException if tag is null
+     */
+    Set<String> getTagged(String tag);
+    
+    /**
+     * Cancels all jobs identified by the given ids. Currently running
+     * executions will not be interrupted but won't be rescheduled.
+     *
+     * @since 1.3
+     * @param ids the job ids
+     * @return the number of cancelled jobs
+     * @throws NullPointerException if ids is null
+     */
+    int cancel(Iterable<String> ids);
+    
+    /**
+     * Pauses all jobs identified by the given ids. Paused jobs keep their
+     * identity but won't fire until they are resumed.
+     *
+     * @since 1.3
+     * @param ids the job ids
+     * @return the number of jobs which have been paused by this call
+     * @throws NullPointerException if ids is null
+     */
+    int pause(Iterable<String> ids);
+    
+    /**
+     * Resumes all paused jobs identified by the given ids. Resumed jobs
+     * fire at the next time satisfying their cron expression.
+     *
+     * @since 1.3
+     * @param ids the job ids
+     * @return the number of jobs which have been resumed by this call
+     * @throws NullPointerException if ids is null
+     */
+    int resume(Iterable<String> ids);
+    
+    /**
+     * Replaces the cron expression of the job identified by the given id. A pending
+     * run is replaced by the next run satisfying the new expression, a currently
+     * running execution is not affected.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @param expression the new cron expression
+     * @return true if the job has been rescheduled, false if there is no such job
+     * @throws NullPointerException if id or expression is null
+     * @throws IllegalArgumentException if expression is no valid cron expression
+     */
+    boolean reschedule(String id, String expression);
+    
+    /**
+     * Reloads the cron expressions of all jobs named by the keys of the given map.
+     * Only jobs whose expression actually changed are rescheduled, all other
+     * jobs are left untouched. All expressions are validated before any job
+     * is changed.
+     *
+     * @since 1.3
+     * @param expressions cron expressions mapped by job name, see {@link TriggerOptions#withName(String)}
+     * @return the number of rescheduled jobs
+     * @throws NullPointerException if expressions is null
+     * @throws IllegalArgumentException if at least one expression is no valid cron expression
+     */
+    int reload(Map<String, String> expressions);
+    
+    /**
+     * Runs the job identified by the given id as soon as possible. The regular
+     * schedule continues after this run.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return true if the job has been fired, false if there is no such job or
+     *         if it is currently running or paused
+     * @throws NullPointerException if id is null
+     */
+    boolean fire(String id);
+    
+    /**
+     * Provides a snapshot of the job identified by the given id.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return the snapshot or null if there is no such job
+     * @throws NullPointerException if id is null
+     */
+    JobInfo getJob(String id);
+    
+    /**
+     * Provides snapshots of all jobs. Snapshots are taken without blocking
+     * scheduled runs.
+     *
+     * @since 1.3
+     * @return a list of snapshots of all jobs
+     */
+    List<JobInfo> getJobs();
+    
+    /**
+     * Provides a snapshot of the engine level statistics.
+     *
+     * @since 1.3
+     * @return the current engine statistics
+     */
+    EngineInfo getEngineInfo();
+    
+    /**
+     * Provides snapshots of the dispatch statistics of all tenants,
+     * see {@link TriggerOptions#withTenant(String)}.
+     *
+     * @since 1.3
+     * @return a list of snapshots of all tenants which submitted at least one run
+     */
+    List<TenantInfo> getTenants();
+    
+    /**
+     * Provides snapshots of the statistics of all mutual exclusion groups,
+     * see {@link TriggerOptions#withExclusionGroups(String...)}.
+     *
+     * @since 1.3
+     * @return a list of snapshots of all groups which have been used at least once
+     */
+    List<ExclusionGroupInfo> getExclusionGroups();
+    
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.List;
+
+/**
+ * JMX management interface of the {@link CronService}. Exposed by the
+ * {@link CronManagementModule}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface CronServiceMXBean {
+    
+    /**
+     * Provides snapshots of all jobs.
+     *
+     * @since 1.3
+     * @return a list of job snapshots
+     */
+    List<JobInfo> getJobs();
+    
+    /**
+     * Provides a snapshot of the job identified by the given id.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return the snapshot or null if there is no such job
+     */
+    JobInfo getJob(String id);
+    
+    /**
+     * Provides a snapshot of the engine level statistics.
+     *
+     * @since 1.3
+     * @return the engine statistics
+     */
+    EngineInfo getEngineInfo();
+    
+    /**
+     * Runs the job identified by the given id as soon as possible.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return true if the job has been fired, false otherwise
+     */
+    boolean fire(String id);
+    
+    /**
+     * Pauses the job identified by the given id.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return true if the job has been paused, false otherwise
+     */
+    boolean pause(String id);
+    
+    /**
+     * Resumes the job identified by the given id.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return true if the job has been resumed, false otherwise
+     */
+    boolean resume(String id);
+    
+    /**
+     * Cancels the job identified by the given id.
+     *
+     * @since 1.3
+     * @param id the job id
+     * @return true if the job has been cancelled, false otherwise
+     */
+    boolean cancel(String id);
+
+}
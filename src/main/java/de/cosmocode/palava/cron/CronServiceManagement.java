@@ -0,0 +1,130 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.Initializable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * Registers a {@link CronServiceMXBean} delegating to the {@link CronService}
+ * at the platform {@link MBeanServer} on startup and unregisters it on shutdown.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class CronServiceManagement implements CronServiceMXBean, Initializable, Disposable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(CronServiceManagement.class);
+    
+    private final CronService service;
+    
+    private MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    
+    private String name = "de.cosmocode.palava.cron:type=CronService";
+    
+    private ObjectName objectName;
+    
+    @Inject
+    public CronServiceManagement(CronService service) {
+        this.service = Preconditions.checkNotNull(service, "Service");
+    }
+    
+    @Inject(optional = true)
+    void setServer(MBeanServer server) {
+        this.server = Preconditions.checkNotNull(server, "Server");
+    }
+    
+    @Inject(optional = true)
+    void setName(@Named(CronConfig.MANAGEMENT_NAME) String name) {
+        this.name = Preconditions.checkNotNull(name, "Name");
+    }
+    
+    @Override
+    public void initialize() throws LifecycleException {
+        try {
+            objectName = new ObjectName(name);
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new LifecycleException(e);
+        }
+        LOG.info("Registered cron management as {}", objectName);
+    }
+    
+    @Override
+    public List<JobInfo> getJobs() {
+        return service.getJobs();
+    }
+    
+    @Override
+    public JobInfo getJob(String id) {
+        return service.getJob(id);
+    }
+    
+    @Override
+    public EngineInfo getEngineInfo() {
+        return service.getEngineInfo();
+    }
+    
+    @Override
+    public boolean fire(String id) {
+        return service.fire(id);
+    }
+    
+    @Override
+    public boolean pause(String id) {
+        return service.pause(ImmutableSet.of(id)) > 0;
+    }
+    
+    @Override
+    public boolean resume(String id) {
+        return service.resume(ImmutableSet.of(id)) > 0;
+    }
+    
+    @Override
+    public boolean cancel(String id) {
+        return service.cancel(ImmutableSet.of(id)) > 0;
+    }
+    
+    @Override
+    public void dispose() throws LifecycleException {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new LifecycleException(e);
+        }
+    }
+
+}
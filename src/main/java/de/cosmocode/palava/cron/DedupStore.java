@@ -0,0 +1,54 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Records the {@link FiringToken}s of completed runs. If a {@link Cron} annotated
+ * store is bound, runs whose token has already been completed are skipped and
+ * successful runs are recorded. Tokens are based on job names, which is why
+ * every job has to be named, see {@link TriggerOptions#withName(String)}.
+ * Stores are consulted on the executing thread without holding any lock of the
+ * job, hence slow stores delay the run but not the management of the job.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ * @see MemoryDedupStoreModule
+ * @see FileDedupStoreModule
+ */
+public interface DedupStore {
+    
+    /**
+     * Checks whether the run identified by the given token has already completed.
+     * 
+     * @since 1.3
+     * @param token the token
+     * @return true if the token has been recorded as completed
+     * @throws NullPointerException if token is null
+     */
+    boolean isCompleted(FiringToken token);
+    
+    /**
+     * Records the run identified by the given token as completed.
+     * 
+     * @since 1.3
+     * @param token the token
+     * @return true if the token has not been recorded before
+     * @throws NullPointerException if token is null
+     */
+    boolean complete(FiringToken token);
+
+}
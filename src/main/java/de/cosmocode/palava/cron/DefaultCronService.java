@@ -16,24 +16,36 @@
 
 package de.cosmocode.palava.cron;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.text.ParseException;
-import java.util.Date;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.quartz.CronExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.internal.Sets;
@@ -51,34 +63,154 @@ import de.cosmocode.palava.core.lifecycle.LifecycleException;
  * @author Willi Schoenborn
  */
 final class DefaultCronService implements CronService, Initializable, UncaughtExceptionHandler, Disposable {
-
+    
     private static final Logger LOG = LoggerFactory.getLogger(DefaultCronService.class);
-
+    
+    /**
+     * Upper bound of missed runs counted one by one while catching up.
+     */
+    private static final int MAX_CATCH_UP = 10000;
+    
+    /**
+     * Number of recent runs per job used for percentiles. Jobs may exist in large
+     * numbers, which is why their windows are much smaller than the default one.
+     */
+    private static final int JOB_WINDOW = 32;
+    
     private final ScheduledExecutorService scheduler;
     
     private final Set<TriggerBinding> bindings;
     
-    private boolean disposed;
+    private final AtomicReference<State> state = new AtomicReference<State>(State.RUNNING);
+    
+    private final AtomicLong sequence = new AtomicLong();
+    
+    private final ConcurrentMap<String, Job> jobs = Maps.newConcurrentMap();
+    
+    private final JobIndex index = new JobIndex();
+    
+    private final ConcurrentMap<Job, Future<?>> futures = Maps.newConcurrentMap();
     
-    private final ConcurrentMap<Runnable, Future<?>> futures = Maps.newConcurrentMap();
+    private Executor executor;
+    
+    private final Map<String, Bulkhead> bulkheads = Maps.newHashMap();
+    
+    private File snapshotFile;
+    
+    /**
+     * Restored job states by name, removed once applied to a job with that name.
+     */
+    private final ConcurrentMap<String, Snapshot.Entry> restored = Maps.newConcurrentMap();
     
     private UncaughtExceptionHandler handler = this;
     
+    private Clock clock = Clock.SYSTEM;
+    
+    private CronEventSink sink;
+    
+    private Set<CronListener> listeners = ImmutableSet.of();
+    
+    private int listenersCapacity = 1024;
+    
+    private ListenerDispatcher dispatcher;
+    
+    private int hotMinuteThreshold = 1000;
+    
     private long taskShutdownTimeout = 1;
     
     private TimeUnit taskShutdownTimeoutUnit = TimeUnit.MINUTES;
     
+    private long taskExecutionTimeout;
+    
+    private TimeUnit taskExecutionTimeoutUnit = TimeUnit.MINUTES;
+    
+    private long misfireThreshold = 1;
+    
+    private TimeUnit misfireThresholdUnit = TimeUnit.SECONDS;
+    
+    private final AtomicLong overruns = new AtomicLong();
+    
+    private final AtomicLong misfires = new AtomicLong();
+    
+    private final AtomicInteger active = new AtomicInteger();
+    
+    private final DurationSampler lateness = new DurationSampler();
+    
+    private ScheduledExecutorService watchdog;
+    
+    private long precisionSpin = 1;
+    
+    private TimeUnit precisionSpinUnit = TimeUnit.MILLISECONDS;
+    
+    private PrecisionTimer precisionTimer;
+    
+    private Map<String, Integer> tenantWeights = ImmutableMap.of();
+    
+    private int fairnessConcurrency;
+    
+    private FairDispatcher fairDispatcher;
+    
+    private DedupStore dedupStore;
+    
+    private MutualExclusion mutualExclusion;
+    
     @Inject
     public DefaultCronService(@Cron ScheduledExecutorService scheduler, Set<TriggerBinding> bindings) {
         this.scheduler = Preconditions.checkNotNull(scheduler, "Scheduler");
         this.bindings = Preconditions.checkNotNull(bindings, "Bindings");
     }
     
+    @Inject(optional = true)
+    void setExecutor(@Cron Executor executor) {
+        this.executor = Preconditions.checkNotNull(executor, "Executor");
+    }
+    
+    @Inject(optional = true)
+    void setBulkheads(Set<Bulkhead> bulkheads) {
+        Preconditions.checkNotNull(bulkheads, "Bulkheads");
+        for (Bulkhead bulkhead : bulkheads) {
+            final Bulkhead previous = this.bulkheads.put(bulkhead.getName(), bulkhead);
+            Preconditions.checkArgument(previous == null, "Duplicate bulkhead %s", bulkhead.getName());
+        }
+    }
+    
+    @Inject(optional = true)
+    void setSnapshotFile(@Named(CronConfig.SNAPSHOT_FILE) String snapshotFile) {
+        this.snapshotFile = new File(Preconditions.checkNotNull(snapshotFile, "SnapshotFile"));
+    }
+    
     @Inject(optional = true)
     void setHandler(@Cron UncaughtExceptionHandler handler) {
         this.handler = Preconditions.checkNotNull(handler, "Handler");
     }
     
+    @Inject(optional = true)
+    void setClock(@Cron Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock, "Clock");
+    }
+    
+    @Inject(optional = true)
+    void setEventSink(@Cron CronEventSink sink) {
+        this.sink = Preconditions.checkNotNull(sink, "Sink");
+    }
+    
+    @Inject(optional = true)
+    void setListeners(Set<CronListener> listeners) {
+        this.listeners = Preconditions.checkNotNull(listeners, "Listeners");
+    }
+    
+    @Inject(optional = true)
+    void setListenersCapacity(@Named(CronConfig.LISTENERS_CAPACITY) int listenersCapacity) {
+        Preconditions.checkArgument(listenersCapacity > 0, "Capacity must be positive");
+        this.listenersCapacity = listenersCapacity;
+    }
+    
+    @Inject(optional = true)
+    void setHotMinuteThreshold(@Named(CronConfig.HOT_MINUTE_THRESHOLD) int hotMinuteThreshold) {
+        Preconditions.checkArgument(hotMinuteThreshold >= 0, "Threshold must not be negative");
+        this.hotMinuteThreshold = hotMinuteThreshold;
+    }
+    
     @Inject(optional = true)
     void setTaskShutdownTimeout(@Named(CronConfig.TASK_SHUTDOWN_TIMEOUT) long taskShutdownTimeout) {
         this.taskShutdownTimeout = taskShutdownTimeout;
@@ -88,42 +220,517 @@ final class DefaultCronService implements CronService, Initializable, UncaughtEx
     void setTaskShutdownTimeoutUnit(@Named(CronConfig.TASK_SHUTDOWN_TIMEOUT_UNIT) TimeUnit taskShutdownTimeoutUnit) {
         this.taskShutdownTimeoutUnit = Preconditions.checkNotNull(taskShutdownTimeoutUnit, "TaskShutdownTimeoutUnit");
     }
-
+    
+    @Inject(optional = true)
+    void setTaskExecutionTimeout(@Named(CronConfig.TASK_EXECUTION_TIMEOUT) long taskExecutionTimeout) {
+        Preconditions.checkArgument(taskExecutionTimeout >= 0, "TaskExecutionTimeout must not be negative");
+        this.taskExecutionTimeout = taskExecutionTimeout;
+    }
+    
+    @Inject(optional = true)
+    void setTaskExecutionTimeoutUnit(@Named(CronConfig.TASK_EXECUTION_TIMEOUT_UNIT) TimeUnit taskExecutionTimeoutUnit) {
+        this.taskExecutionTimeoutUnit = Preconditions.checkNotNull(taskExecutionTimeoutUnit,
+            "TaskExecutionTimeoutUnit");
+    }
+    
+    @Inject(optional = true)
+    void setMisfireThreshold(@Named(CronConfig.MISFIRE_THRESHOLD) long misfireThreshold) {
+        Preconditions.checkArgument(misfireThreshold >= 0, "MisfireThreshold must not be negative");
+        this.misfireThreshold = misfireThreshold;
+    }
+    
+    @Inject(optional = true)
+    void setMisfireThresholdUnit(@Named(CronConfig.MISFIRE_THRESHOLD_UNIT) TimeUnit misfireThresholdUnit) {
+        this.misfireThresholdUnit = Preconditions.checkNotNull(misfireThresholdUnit, "MisfireThresholdUnit");
+    }
+    
+    @Inject(optional = true)
+    void setDedupStore(@Cron DedupStore dedupStore) {
+        this.dedupStore = Preconditions.checkNotNull(dedupStore, "DedupStore");
+    }
+    
+    @Inject(optional = true)
+    void setTenantWeights(@Cron Map<String, Integer> tenantWeights) {
+        this.tenantWeights = Preconditions.checkNotNull(tenantWeights, "TenantWeights");
+    }
+    
+    @Inject(optional = true)
+    void setFairnessConcurrency(@Named(CronConfig.FAIRNESS_CONCURRENCY) int fairnessConcurrency) {
+        Preconditions.checkArgument(fairnessConcurrency > 0, "FairnessConcurrency must be positive");
+        this.fairnessConcurrency = fairnessConcurrency;
+    }
+    
+    @Inject(optional = true)
+    void setPrecisionSpin(@Named(CronConfig.PRECISION_SPIN) long precisionSpin) {
+        Preconditions.checkArgument(precisionSpin >= 0, "PrecisionSpin must not be negative");
+        this.precisionSpin = precisionSpin;
+    }
+    
+    @Inject(optional = true)
+    void setPrecisionSpinUnit(@Named(CronConfig.PRECISION_SPIN_UNIT) TimeUnit precisionSpinUnit) {
+        this.precisionSpinUnit = Preconditions.checkNotNull(precisionSpinUnit, "PrecisionSpinUnit");
+    }
+    
     @Override
     public void initialize() throws LifecycleException {
+        restore();
+        if (!listeners.isEmpty()) {
+            LOG.info("Notifying {} listeners", listeners.size());
+            dispatcher = new ListenerDispatcher(listeners, listenersCapacity);
+        }
         LOG.info("Scheduling {} tasks", bindings.size());
         
+        final List<Job> commands = Lists.newArrayListWithCapacity(bindings.size());
         for (TriggerBinding binding : bindings) {
-            final Runnable runnable = binding.getCommand();
-            final CronExpression expression = binding.getExpression();
-            schedule(runnable, expression);
+            final ConfiguredTriggerBinding configured = TriggerBindings.configured(binding);
+            final Runnable runnable = configured.getCommand();
+            final Trigger trigger = configured.getTrigger();
+            commands.add(new Job(nextId(), runnable, trigger, configured.getOptions(), configured.getExecutor()));
+        }
+        forecast(commands);
+        scheduleAll(commands);
+    }
+    
+    /**
+     * Warns about minutes of the day in which the given jobs are expected
+     * to fire more often than the configured threshold.
+     * 
+     * @param commands the jobs
+     */
+    private void forecast(List<Job> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        final List<Trigger> triggers = Lists.newArrayListWithCapacity(commands.size());
+        for (Job command : commands) {
+            triggers.add(command.trigger);
+        }
+        final LoadForecast forecast = LoadForecast.ofTriggers(triggers);
+        LOG.debug("Forecasted load: {}", forecast);
+        final List<Integer> hot = forecast.getHotMinutes(hotMinuteThreshold);
+        if (hot.isEmpty()) {
+            return;
         }
+        final StringBuilder minutes = new StringBuilder();
+        for (int minute : hot.subList(0, Math.min(10, hot.size()))) {
+            minutes.append(String.format(" %02d:%02d", minute / 60, minute % 60));
+        }
+        LOG.warn("{} minutes of the day exceed {} firings, peak is {} firings at {}, first hot minutes:{}", 
+            new Object[] {hot.size(), hotMinuteThreshold, forecast.getPeak(), 
+                String.format("%02d:%02d", forecast.getPeakMinute() / 60, forecast.getPeakMinute() % 60), minutes
+        });
     }
     
     @Override
     public void schedule(Runnable runnable, String expression) {
+        schedule(runnable, expression, TriggerOptions.defaults());
+    }
+    
+    @Override
+    public String schedule(Runnable runnable, String expression, TriggerOptions options) {
+        return schedule(runnable, Triggers.cron(expression), options);
+    }
+    
+    @Override
+    public List<String> scheduleAll(Iterable<? extends Map.Entry<? extends Runnable, String>> tasks,
+        TriggerOptions options) {
+        Preconditions.checkNotNull(tasks, "Tasks");
+        Preconditions.checkNotNull(options, "Options");
+        
+        // tenant job sets usually share a handful of distinct expressions
+        final Map<String, Trigger> parsed = Maps.newHashMap();
+        final Set<String> invalid = Sets.newHashSet();
+        final List<Job> commands = Lists.newArrayList();
+        
+        for (Map.Entry<? extends Runnable, String> entry : tasks) {
+            final Runnable runnable = Preconditions.checkNotNull(entry.getKey(), "Task");
+            final String value = Preconditions.checkNotNull(entry.getValue(), "Expression of %s", runnable);
+            Trigger trigger = parsed.get(value);
+            if (trigger == null) {
+                if (invalid.contains(value)) {
+                    continue;
+                }
+                try {
+                    trigger = Triggers.cron(new CronExpression(value));
+                } catch (ParseException e) {
+                    invalid.add(value);
+                    continue;
+                }
+                parsed.put(value, trigger);
+            }
+            commands.add(new Job(nextId(), runnable, trigger, options, null));
+        }
+        
+        Preconditions.checkArgument(invalid.isEmpty(), "Invalid cron expressions %s", invalid);
+        scheduleAll(commands);
+        final List<String> ids = Lists.newArrayListWithCapacity(commands.size());
+        for (Job command : commands) {
+            ids.add(command.id);
+        }
+        return ids;
+    }
+    
+    
+    /**
+     * Schedules all given commands. First run times are computed once per distinct trigger
+     * using the same reference time and only a single summary is logged on info level.
+     *
+     * @param commands the commands to schedule
+     */
+    private void scheduleAll(List<Job> commands) {
+        Preconditions.checkState(!isDisposed(), "Cron service has been disposed");
+        final long now = clock.currentTimeMillis();
+        // every job wraps its trigger individually, hence equal triggers and calendars share their first time
+        final Map<List<Object>, Long> times = Maps.newHashMap();
+        int unsatisfied = 0;
+        
+        for (Job command : commands) {
+            final List<Object> key = Arrays.<Object>asList(command.trigger, command.options.getExclusions());
+            Long time = restore(command);
+            if (time == null) {
+                time = times.get(key);
+            }
+            if (time == null) {
+                time = command.effective.first(now);
+                times.put(key, time);
+            }
+            
+            if (time.longValue() == -1) {
+                LOG.debug("Trigger '{}' for {} is not satisfied", command.trigger, command.runnable);
+                unsatisfied++;
+            } else {
+                register(command);
+                command.start(time.longValue());
+            }
+        }
+        
+        LOG.info("Scheduled {} of {} tasks, {} not satisfied", new Object[] {
+            commands.size() - unsatisfied, commands.size(), unsatisfied
+        });
+    }
+    
+    @Override
+    public String schedule(Runnable runnable, Trigger trigger, TriggerOptions options) {
+        Preconditions.checkNotNull(runnable, "Runnable");
+        Preconditions.checkNotNull(trigger, "Trigger");
+        Preconditions.checkNotNull(options, "Options");
+        Preconditions.checkState(!isDisposed(), "Cron service has been disposed");
+        final Job command = new Job(nextId(), runnable, trigger, options, null);
+        final Long restoredTime = restore(command);
+        final long time = restoredTime == null ? 
+            command.effective.first(clock.currentTimeMillis()) : restoredTime.longValue();
+        
+        if (time == -1) {
+            LOG.info("Trigger '{}' for {} is not satisfied", trigger, runnable);
+        } else {
+            register(command);
+            command.start(time);
+        }
+        return command.id;
+    }
+    
+    /**
+     * Reads the configured snapshot, if any. Failures are logged and
+     * result in a regular start.
+     */
+    private void restore() {
+        if (snapshotFile == null || !snapshotFile.exists()) {
+            return;
+        }
         try {
-            schedule(runnable, new CronExpression(expression));
-        } catch (ParseException e) {
-            throw new IllegalArgumentException(e);
+            final long start = System.currentTimeMillis();
+            restored.putAll(Snapshot.read(snapshotFile));
+            LOG.info("Restored {} jobs from {} in {} ms", new Object[] {
+                restored.size(), snapshotFile, System.currentTimeMillis() - start
+            });
+        } catch (IOException e) {
+            LOG.warn("Unable to restore snapshot " + snapshotFile + ", starting from scratch", e);
         }
     }
     
-    private void schedule(Runnable runnable, CronExpression expression) {
-        final Runnable command = new ReschedulingRunnable(runnable, expression);
-        final long delay = computeDelay(expression);
+    /**
+     * Applies the restored state of the job with the same name and trigger, if any.
+     * Triggers are compared by their description, which does not cover every
+     * range of an exclusion calendar. The restored next fire time is therefore
+     * dropped if the current calendar excludes it.
+     * 
+     * @param command the job
+     * @return the restored next fire time or null if there is no matching restored state
+     */
+    private Long restore(Job command) {
+        final String name = command.options.getName();
+        if (name == null || restored.isEmpty()) {
+            return null;
+        }
+        final Snapshot.Entry entry = restored.remove(name);
+        if (entry == null) {
+            return null;
+        } else if (!entry.getTrigger().equals(command.effective.toString())) {
+            LOG.debug("Trigger of {} changed from '{}', ignoring restored state", command, entry.getTrigger());
+            return null;
+        }
+        
+        command.runs.set(entry.getRuns());
+        command.failures.set(entry.getFailures());
+        command.overruns.set(entry.getOverruns());
+        command.misfires.set(entry.getMisfires());
         
-        if (delay == -1) {
-            LOG.info("Cron expression '{}' for {} is not satisfied", expression, runnable);
+        final ExclusionCalendar exclusions = command.options.getExclusions();
+        if (exclusions != null && exclusions.isExcluded(entry.getNextFireTime())) {
+            LOG.debug("Restored next fire time of {} is excluded, computing a new one", command);
+            return null;
         } else {
-            // may save some time here
-            if (LOG.isInfoEnabled()) {
-                final TimeUnit human = TimeUnits.forMortals(delay, TimeUnit.MILLISECONDS);
-                LOG.info("Scheduling {} to run in {} {}", new Object[] {
-                    runnable, human.convert(delay, TimeUnit.MILLISECONDS), human.name().toLowerCase()
-                });
+            return entry.getNextFireTime();
+        }
+    }
+    
+    /**
+     * Writes the state of all named and scheduled jobs to the configured snapshot, if any.
+     */
+    private void snapshot() {
+        if (snapshotFile == null) {
+            return;
+        }
+        final Map<String, Snapshot.Entry> entries = Maps.newHashMap();
+        final Set<String> duplicates = Sets.newHashSet();
+        for (Job command : jobs.values()) {
+            final String name = command.options.getName();
+            if (name == null || command.paused || command.cancelled) {
+                continue;
+            } else if (entries.containsKey(name) || duplicates.contains(name)) {
+                // ambiguous names can't be restored reliably
+                entries.remove(name);
+                duplicates.add(name);
+                continue;
             }
-            schedule(command, delay);
+            entries.put(name, new Snapshot.Entry(name, command.effective.toString(), command.scheduledAt,
+                command.runs.get(), command.failures.get(), command.overruns.get(), command.misfires.get()));
+        }
+        try {
+            Snapshot.write(snapshotFile, entries.values());
+            LOG.info("Wrote snapshot of {} jobs to {}", entries.size(), snapshotFile);
+        } catch (IOException e) {
+            LOG.warn("Unable to write snapshot " + snapshotFile, e);
+        }
+    }
+    
+    /**
+     * Publishes an event to the configured sink and listeners. Events are only created
+     * if a sink or at least one listener is present.
+     * 
+     * @param type the event type
+     * @param command the job
+     * @param value the delay or duration
+     * @param throwable the cause of a failure or null
+     */
+    private void publish(CronEvent.Type type, Job command, long value, Throwable throwable) {
+        if (sink == null && dispatcher == null) {
+            return;
+        }
+        final CronEvent event = new CronEvent(type, command.id, command.options.getName(), 
+            command.runs.get(), clock.currentTimeMillis(), value, throwable, command.getToken());
+        if (dispatcher != null) {
+            dispatcher.publish(event);
+        }
+        if (sink == null) {
+            return;
+        }
+        try {
+            sink.publish(event);
+            /* CHECKSTYLE:OFF */
+        } catch (RuntimeException e) {
+            /* CHECKSTYLE:ON */
+            LOG.warn("Sink " + sink + " failed to publish " + event, e);
+        }
+    }
+    
+    private String nextId() {
+        return Long.toString(sequence.incrementAndGet());
+    }
+    
+    private void register(Job command) {
+        jobs.put(command.id, command);
+        index.add(command.id, command.options);
+    }
+    
+    private void unregister(Job command) {
+        if (jobs.remove(command.id, command)) {
+            index.remove(command.id, command.options);
+        }
+    }
+    
+    @Override
+    public Set<String> getGroup(String group) {
+        Preconditions.checkNotNull(group, "Group");
+        return index.getGroup(group);
+    }
+    
+    @Override
+    public Set<String> getTagged(String tag) {
+        Preconditions.checkNotNull(tag, "Tag");
+        return index.getTagged(tag);
+    }
+    
+    @Override
+    public int cancelGroup(String group) {
+        final int cancelled = cancel(getGroup(group));
+        LOG.info("Cancelled {} tasks of group {}", cancelled, group);
+        return cancelled;
+    }
+    
+    @Override
+    public int cancel(Iterable<String> ids) {
+        Preconditions.checkNotNull(ids, "Ids");
+        int cancelled = 0;
+        for (String id : ids) {
+            final Job command = jobs.get(id);
+            if (command != null && command.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+    
+    @Override
+    public int pause(Iterable<String> ids) {
+        Preconditions.checkNotNull(ids, "Ids");
+        int paused = 0;
+        for (String id : ids) {
+            final Job command = jobs.get(id);
+            if (command != null && command.pause()) {
+                paused++;
+            }
+        }
+        return paused;
+    }
+    
+    @Override
+    public int resume(Iterable<String> ids) {
+        Preconditions.checkNotNull(ids, "Ids");
+        int resumed = 0;
+        for (String id : ids) {
+            final Job command = jobs.get(id);
+            if (command != null && command.resume()) {
+                resumed++;
+            }
+        }
+        return resumed;
+    }
+    
+    @Override
+    public boolean reschedule(String id, String expression) {
+        Preconditions.checkNotNull(id, "Id");
+        final Trigger next = Triggers.cron(expression);
+        final Job command = jobs.get(id);
+        return command != null && command.update(next);
+    }
+    
+    @Override
+    public int reload(Map<String, String> expressions) {
+        Preconditions.checkNotNull(expressions, "Expressions");
+        
+        // validate everything before touching a single job
+        final Map<String, Trigger> parsed = Maps.newHashMap();
+        final Set<String> invalid = Sets.newHashSet();
+        for (Map.Entry<String, String> entry : expressions.entrySet()) {
+            try {
+                parsed.put(entry.getKey(), Triggers.cron(new CronExpression(entry.getValue())));
+            } catch (ParseException e) {
+                invalid.add(entry.getKey());
+            }
+        }
+        Preconditions.checkArgument(invalid.isEmpty(), "Invalid cron expressions for %s", invalid);
+        
+        int updated = 0;
+        for (Map.Entry<String, Trigger> entry : parsed.entrySet()) {
+            final Trigger next = entry.getValue();
+            for (String id : index.getNamed(entry.getKey())) {
+                final Job command = jobs.get(id);
+                if (command == null) {
+                    continue;
+                } else if (next.equals(command.trigger)) {
+                    continue;
+                } else if (command.update(next)) {
+                    updated++;
+                }
+            }
+        }
+        LOG.info("Reloaded {} expressions, rescheduled {} jobs", expressions.size(), updated);
+        return updated;
+    }
+    
+    @Override
+    public boolean fire(String id) {
+        Preconditions.checkNotNull(id, "Id");
+        final Job command = jobs.get(id);
+        return command != null && command.fire();
+    }
+    
+    @Override
+    public JobInfo getJob(String id) {
+        Preconditions.checkNotNull(id, "Id");
+        final Job command = jobs.get(id);
+        return command == null ? null : command.snapshot();
+    }
+    
+    @Override
+    public List<JobInfo> getJobs() {
+        final List<JobInfo> infos = Lists.newArrayListWithExpectedSize(jobs.size());
+        for (Job command : jobs.values()) {
+            infos.add(command.snapshot());
+        }
+        return infos;
+    }
+    
+    @Override
+    public EngineInfo getEngineInfo() {
+        int queueDepth;
+        int poolSize;
+        if (scheduler instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor timer = ThreadPoolExecutor.class.cast(scheduler);
+            queueDepth = timer.getQueue().size();
+            poolSize = timer.getPoolSize();
+        } else if (scheduler instanceof VirtualScheduler) {
+            queueDepth = VirtualScheduler.class.cast(scheduler).getQueueSize();
+            poolSize = 1;
+        } else {
+            queueDepth = -1;
+            poolSize = -1;
+        }
+        if (executor instanceof ThreadPoolExecutor) {
+            // runs are performed by the workers, the timer only hands them over
+            final ThreadPoolExecutor workers = ThreadPoolExecutor.class.cast(executor);
+            queueDepth = queueDepth == -1 ? -1 : queueDepth + workers.getQueue().size();
+            poolSize = workers.getPoolSize();
+        }
+        final WorkerPool pool = executor instanceof WorkerPool ? WorkerPool.class.cast(executor) : null;
+        return new EngineInfo(jobs.size(), futures.size(), queueDepth, poolSize, 
+            active.get(), overruns.get(), misfires.get(), lateness, pool);
+    }
+    
+    @Override
+    public List<TenantInfo> getTenants() {
+        final FairDispatcher dispatcher;
+        synchronized (this) {
+            dispatcher = fairDispatcher;
+        }
+        if (dispatcher == null) {
+            return ImmutableList.of();
+        } else {
+            return dispatcher.getTenants();
+        }
+    }
+    
+    @Override
+    public List<ExclusionGroupInfo> getExclusionGroups() {
+        final MutualExclusion exclusion;
+        synchronized (this) {
+            exclusion = mutualExclusion;
+        }
+        if (exclusion == null) {
+            return ImmutableList.of();
+        } else {
+            return exclusion.getGroups();
         }
     }
     
@@ -132,135 +739,884 @@ final class DefaultCronService implements CronService, Initializable, UncaughtEx
         LOG.error("Uncaught exception in " + t, e);
     }
     
-    private void schedule(Runnable command, long delay) {
-        final Future<?> future = scheduler.schedule(command, delay, TimeUnit.MILLISECONDS);
-        futures.put(command, future);
+    /**
+     * Provides the number of runs which exceeded their execution timeout since startup.
+     *
+     * @return the number of overruns
+     */
+    long getOverruns() {
+        return overruns.get();
+    }
+    
+    /**
+     * Provides the number of overdue, coalesced and skipped runs since startup.
+     *
+     * @return the number of misfires
+     */
+    long getMisfires() {
+        return misfires.get();
     }
-
-    private long computeDelay(CronExpression expression) {
-        return computeDelay(expression, new Date());
+    
+    /**
+     * Provides the high resolution timer, which is started on first use.
+     * 
+     * @return the timer or null if this service has been stopped
+     */
+    private synchronized PrecisionTimer getPrecisionTimer() {
+        if (state.get() == State.STOPPED) {
+            return null;
+        } else if (precisionTimer == null) {
+            LOG.info("Starting high resolution timer");
+            precisionTimer = new PrecisionTimer(precisionSpin, precisionSpinUnit);
+        }
+        return precisionTimer;
+    }
+    
+    /**
+     * Provides the dispatcher for runs of tenants, which is created on first use. Unless
+     * configured otherwise, the concurrency follows the size of a {@link WorkerPool}, which
+     * also lets the {@link PoolTuner} see the backlog of all tenants, or equals the maximum
+     * size of any other thread pool. Without executor, runs are dispatched to the scheduler
+     * and the concurrency equals its number of threads.
+     * 
+     * @return the dispatcher
+     */
+    private synchronized FairDispatcher getFairDispatcher() {
+        if (fairDispatcher == null) {
+            final int concurrency;
+            if (fairnessConcurrency > 0) {
+                concurrency = fairnessConcurrency;
+            } else if (executor instanceof ThreadPoolExecutor) {
+                concurrency = ThreadPoolExecutor.class.cast(executor).getMaximumPoolSize();
+            } else if (executor == null) {
+                concurrency = scheduler instanceof ThreadPoolExecutor ? 
+                    ThreadPoolExecutor.class.cast(scheduler).getCorePoolSize() : 1;
+            } else {
+                concurrency = Runtime.getRuntime().availableProcessors();
+            }
+            LOG.info("Dispatching runs of tenants using a concurrency of {}", concurrency);
+            fairDispatcher = new FairDispatcher(clock, concurrency, tenantWeights);
+            if (fairnessConcurrency == 0 && executor instanceof WorkerPool) {
+                WorkerPool.class.cast(executor).attach(fairDispatcher);
+            }
+        }
+        return fairDispatcher;
     }
     
     /**
-     * Computes the delay for the next execution in milliseconds.
+     * Provides the coordinator of mutual exclusion groups, which is created on first use.
      * 
-     * @param expression the cron expression
-     * @param after the date after which the next run should happen
-     * @return the computed delay or -1 if now date after the specified one
-     *         satisifies the given cron expression
+     * @return the coordinator
      */
-    private long computeDelay(CronExpression expression, Date after) {
-        final Date start = expression.getNextValidTimeAfter(after);
-        return start == null ? -1 : start.getTime() - System.currentTimeMillis(); 
+    private synchronized MutualExclusion getMutualExclusion() {
+        if (mutualExclusion == null) {
+            mutualExclusion = new MutualExclusion(clock);
+        }
+        return mutualExclusion;
+    }
+    
+    private synchronized ScheduledExecutorService getWatchdog() {
+        if (state.get() == State.STOPPED) {
+            return null;
+        } else if (watchdog == null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "cron-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            
+            });
+        }
+        return watchdog;
     }
     
     /**
-     * Implementation of the {@link Runnable} interface which reschedules itself
-     * after every execution.
+     * A scheduled task which reschedules itself after every execution. State transitions
+     * (pause, resume, cancel, update and reschedule) are guarded by the instance's monitor.
+     * Every scheduling creates a new generation, runs of older generations are ignored.
      *
      * @author Willi Schoenborn
      */
-    private final class ReschedulingRunnable implements Runnable {
+    private final class Job {
+        
+        private final String id;
         
         private final Runnable runnable;
         
-        private final CronExpression expression;
+        private volatile Trigger trigger;
         
-        private Date startedAt;
-
-        public ReschedulingRunnable(Runnable runnable, CronExpression expression) {
+        /**
+         * The trigger including the exclusions of the options.
+         */
+        private volatile Trigger effective;
+        
+        private final TriggerOptions options;
+        
+        private final AtomicLong overruns = new AtomicLong();
+        
+        private final AtomicLong runs = new AtomicLong();
+        
+        private final AtomicLong failures = new AtomicLong();
+        
+        private final AtomicLong misfires = new AtomicLong();
+        
+        private final DurationSampler durations = new DurationSampler(JOB_WINDOW);
+        
+        private final DurationSampler jitters = new DurationSampler(JOB_WINDOW);
+        
+        private volatile long scheduledAt;
+        
+        private volatile long runAt;
+        
+        private volatile long startedAt;
+        
+        private volatile long finishedAt;
+        
+        private long generation;
+        
+        private volatile boolean running;
+        
+        private volatile boolean paused;
+        
+        private volatile boolean cancelled;
+        
+        /**
+         * The executor of this job or null to use the service wide one.
+         */
+        private final Executor executor;
+        
+        /**
+         * The bulkhead limiting concurrent runs or null if runs are not limited.
+         */
+        private final Bulkhead bulkhead;
+        
+        public Job(String id, Runnable runnable, Trigger trigger, TriggerOptions options, Executor executor) {
+            this.id = Preconditions.checkNotNull(id, "Id");
             this.runnable = Preconditions.checkNotNull(runnable, "Runnable");
-            this.expression = Preconditions.checkNotNull(expression, "Expression");
+            this.trigger = Preconditions.checkNotNull(trigger, "Trigger");
+            this.options = Preconditions.checkNotNull(options, "Options");
+            // ids differ between restarts, hence tokens of unnamed jobs can't be deduplicated
+            Preconditions.checkArgument(dedupStore == null || options.getName() != null,
+                "%s requires a name, because a DedupStore is bound", runnable);
+            this.effective = effective(trigger);
+            this.executor = executor;
+            if (options.getBulkhead() == null) {
+                this.bulkhead = null;
+            } else {
+                this.bulkhead = bulkheads.get(options.getBulkhead());
+                Preconditions.checkArgument(bulkhead != null, "Unknown bulkhead %s", options.getBulkhead());
+            }
         }
         
-        @Override
-        public void run() {
-            if (isDisposed()) {
-                LOG.debug("Suppressing scheduled execution of {} due to shutdown", runnable);
+        private Trigger effective(Trigger next) {
+            if (options.getExclusions() == null) {
+                return next;
             } else {
-                startedAt = new Date();
+                return Triggers.excluding(next, options.getExclusions());
+            }
+        }
+        
+        /**
+         * Performs a scheduled run.
+         * 
+         * @param scheduled the generation of the scheduled run
+         */
+        private void run(long scheduled) {
+            final FiringToken token;
+            synchronized (this) {
+                // checked under the monitor, so dispose either sees this run as running or it never starts
+                if (isDisposed()) {
+                    LOG.debug("Suppressing scheduled execution of {} due to shutdown", runnable);
+                    return;
+                } else if (scheduled != generation) {
+                    LOG.debug("Suppressing outdated execution of {}", this);
+                    return;
+                } else if (cancelled || paused) {
+                    LOG.debug("Suppressing scheduled execution of paused or cancelled {}", this);
+                    return;
+                }
+                
+                // replayed runs are late by design, hence lateness is relative to the planned run
+                final long late = clock.currentTimeMillis() - runAt;
+                if (late > getMisfireThreshold()) {
+                    misfired(1L);
+                    publish(CronEvent.Type.MISFIRED, this, late, null);
+                    if (options.getMisfirePolicy() == MisfirePolicy.SKIP) {
+                        LOG.debug("Skipping overdue run of {}, {} ms late", this, late);
+                        skip();
+                        return;
+                    }
+                }
+                token = getToken();
+                running = true;
+            }
+            
+            // the store may access the disk, hence it's never consulted while holding the monitor
+            if (dedupStore != null && dedupStore.isCompleted(token)) {
+                LOG.info("Skipping run of {}, {} has already been completed", this, token);
+                synchronized (this) {
+                    running = false;
+                    // paused, cancelled or rescheduled in the meantime
+                    if (scheduled == generation && !cancelled && !paused) {
+                        skip();
+                    }
+                    notifyAll();
+                }
+                return;
+            }
+            
+            startedAt = clock.currentTimeMillis();
+            runs.incrementAndGet();
+            active.incrementAndGet();
+            publish(CronEvent.Type.FIRED, this, 0L, null);
+            final Execution execution = new Execution(Thread.currentThread());
+            final Future<?> timeout = watch(execution);
+            FiringToken.enter(token);
+            try {
+                LOG.trace("Performing scheduled execution of {}", runnable);
                 try {
-                    LOG.trace("Performing scheduled execution of {}", runnable);
-                    try {
-                        runnable.run();
-                        /* CHECKSTYLE:OFF */
-                    } catch (RuntimeException e) {
-                        /* CHECKSTYLE:ON */
-                        handler.uncaughtException(Thread.currentThread(), e);
+                    runnable.run();
+                    final long duration = clock.currentTimeMillis() - startedAt;
+                    durations.record(duration);
+                    if (dedupStore != null) {
+                        dedupStore.complete(token);
                     }
-                } finally {
-                    futures.remove(this);
-                    reschedule();
+                    publish(CronEvent.Type.FINISHED, this, duration, null);
+                    /* CHECKSTYLE:OFF */
+                } catch (RuntimeException e) {
+                    /* CHECKSTYLE:ON */
+                    final long duration = clock.currentTimeMillis() - startedAt;
+                    durations.record(duration);
+                    failures.incrementAndGet();
+                    publish(CronEvent.Type.FAILED, this, duration, e);
+                    handler.uncaughtException(Thread.currentThread(), e);
+                }
+            } finally {
+                FiringToken.exit();
+                active.decrementAndGet();
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                execution.finish();
+                completed();
+            }
+        }
+        
+        /**
+         * Provides the token of the current or upcoming run.
+         * 
+         * @return the token
+         */
+        private FiringToken getToken() {
+            return FiringToken.of(options.getName() == null ? id : options.getName(), scheduledAt);
+        }
+        
+        private long getMisfireThreshold() {
+            return options.getMisfireThreshold() > 0 ?
+                options.getMisfireThreshold() : misfireThresholdUnit.toMillis(misfireThreshold);
+        }
+        
+        private void misfired(long count) {
+            misfires.addAndGet(count);
+            DefaultCronService.this.misfires.addAndGet(count);
+        }
+        
+        private Future<?> watch(Execution execution) {
+            final long timeout = options.getTimeout() > 0 ?
+                options.getTimeout() : taskExecutionTimeoutUnit.toMillis(taskExecutionTimeout);
+            if (timeout <= 0) {
+                return null;
+            }
+            // timeouts are measured in the time of the clock, virtual clocks use the scheduler
+            final ScheduledExecutorService executor = clock == Clock.SYSTEM ? getWatchdog() : scheduler;
+            if (executor == null) {
+                return null;
+            } else {
+                return executor.schedule(execution, timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        
+        /**
+         * Schedules the first run.
+         *
+         * @param time the time of the first run
+         */
+        public synchronized void start(long time) {
+            if (!cancelled) {
+                schedule(time, CronEvent.Type.SCHEDULED);
+            }
+        }
+        
+        private void schedule(long time, CronEvent.Type type) {
+            schedule(time, time, type);
+        }
+        
+        /**
+         * Schedules the run belonging to the given slot at the given time.
+         * 
+         * @param slot the time the run is due according to the trigger
+         * @param time the time to actually perform the run
+         * @param type the event type to publish
+         */
+        private void schedule(long slot, long time, CronEvent.Type type) {
+            assert Thread.holdsLock(this) : "Expected monitor to be held";
+            if (isDisposed()) {
+                // dispose drains every job using its monitor, hence nothing can slip through afterwards
+                LOG.debug("Suppressing scheduling of {} due to shutdown", this);
+                return;
+            }
+            final long delay = Math.max(0L, time - clock.currentTimeMillis());
+            LOG.debug("Scheduling {} to run in {} ms", this, delay);
+            scheduledAt = slot;
+            runAt = time;
+            publish(type, this, delay, null);
+            // high resolution firing relies on the system clock, virtual clocks use the scheduler
+            final PrecisionTimer timer = options.isHighResolution() && clock == Clock.SYSTEM ? 
+                getPrecisionTimer() : null;
+            final Runnable run = new ScheduledRun(++generation, time, timer);
+            if (timer == null) {
+                futures.put(this, scheduler.schedule(run, delay, TimeUnit.MILLISECONDS));
+            } else {
+                futures.put(this, timer.schedule(run, time));
+            }
+        }
+        
+        /**
+         * Invalidates and cancels the pending run, if any.
+         */
+        private void cancelPending() {
+            assert Thread.holdsLock(this) : "Expected monitor to be held";
+            generation++;
+            final Future<?> future = futures.remove(this);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+        
+        /**
+         * Called exactly once per run by the executing thread after the run finished,
+         * even if it exceeded its execution timeout. A run which ignores its interrupt hence
+         * delays the next run of the same job instead of overlapping with it.
+         */
+        private synchronized void completed() {
+            running = false;
+            finishedAt = clock.currentTimeMillis();
+            futures.remove(this);
+            reschedule(false);
+            notifyAll();
+        }
+        
+        /**
+         * Cancels the pending run, if any. Must only be called once the service is draining.
+         * 
+         * @return true if this job is currently running, false otherwise
+         */
+        public synchronized boolean drain() {
+            cancelPending();
+            return running;
+        }
+        
+        /**
+         * Waits for the current execution, if any, to complete.
+         * 
+         * @param timeout the maximum time to wait in milliseconds
+         * @return true if this job is idle, false if the timeout elapsed
+         * @throws InterruptedException if the current thread has been interrupted while waiting
+         */
+        public synchronized boolean awaitIdle(long timeout) throws InterruptedException {
+            final long deadline = System.currentTimeMillis() + timeout;
+            while (running) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
                 }
+                wait(remaining);
             }
+            return true;
         }
         
-        private void reschedule() {
+        /**
+         * Schedules the next run if this job is still active.
+         * 
+         * @param restart true to compute the next run as if this job had been
+         *        scheduled right now, false to compute it based on the previous run
+         */
+        private void reschedule(boolean restart) {
+            assert Thread.holdsLock(this) : "Expected monitor to be held";
             if (scheduler.isShutdown()) {
                 LOG.debug("Suppressing {} from beind re-scheduled due to {} shutting down", runnable, scheduler);
             } else if (isDisposed()) {
                 LOG.debug("Suppressing re-scheduling of {} due to shutdown", runnable);
+            } else if (cancelled) {
+                LOG.debug("Suppressing re-scheduling of cancelled {}", this);
+            } else if (paused) {
+                LOG.debug("Suppressing re-scheduling of paused {}", this);
             } else {
-                assert startedAt != null : "Expected Start date to be set";
                 LOG.debug("Rescheduling {}", runnable);
-                final long delay = computeDelay(expression, startedAt);
+                final long now = clock.currentTimeMillis();
+                final long time;
+                final long at;
+                if (restart) {
+                    time = effective.first(now);
+                    at = time;
+                } else if (options.getMisfirePolicy() == MisfirePolicy.REPLAY) {
+                    // continue with the slot following the last one, even if it lies in the past
+                    time = effective.next(scheduledAt, startedAt, finishedAt);
+                    at = time < now ? Math.max(now, startedAt + options.getReplayInterval()) : time;
+                    if (time != -1 && time < now - getMisfireThreshold()) {
+                        // counted once here, the replayed run itself is not late
+                        misfired(1L);
+                    }
+                } else {
+                    // relative to the slot, so slots passed while the run was overdue are counted as well
+                    time = catchUp(effective.next(scheduledAt, startedAt, finishedAt), now);
+                    at = time;
+                }
                 
-                if (delay == -1) {
-                    LOG.info("Cron expression '{}' for {} is not longer satisfied", expression, runnable);
+                if (time == -1) {
+                    LOG.info("Trigger '{}' for {} is not longer satisfied", trigger, runnable);
+                    unregister(this);
+                } else {
+                    schedule(time, at, CronEvent.Type.RESCHEDULED);
+                }
+            }
+        }
+        
+        /**
+         * Drops the overdue run and schedules the first run which is not overdue.
+         */
+        private void skip() {
+            assert Thread.holdsLock(this) : "Expected monitor to be held";
+            final long now = clock.currentTimeMillis();
+            final long time = catchUp(effective.next(scheduledAt, scheduledAt, now), now);
+            if (time == -1) {
+                LOG.info("Trigger '{}' for {} is not longer satisfied", trigger, runnable);
+                unregister(this);
+            } else {
+                schedule(time, CronEvent.Type.RESCHEDULED);
+            }
+        }
+        
+        /**
+         * Advances the given time past all slots which are overdue. Every
+         * passed slot is counted as misfire.
+         * 
+         * @param time the candidate time of the next run
+         * @param now the current time
+         * @return the first time which is not overdue or -1 if there is none
+         */
+        private long catchUp(long time, long now) {
+            final long limit = now - getMisfireThreshold();
+            long next = time;
+            long missed = 0;
+            while (next != -1 && next < limit) {
+                if (++missed > MAX_CATCH_UP) {
+                    next = effective.first(now);
+                    break;
+                }
+                next = effective.next(next, next, next);
+            }
+            if (missed > 0) {
+                LOG.debug("{} missed {} runs", this, missed);
+                misfired(missed);
+            }
+            return next;
+        }
+        
+        public synchronized boolean pause() {
+            if (cancelled || paused) {
+                return false;
+            }
+            paused = true;
+            cancelPending();
+            LOG.debug("Paused {}", this);
+            return true;
+        }
+        
+        public synchronized boolean resume() {
+            if (cancelled || !paused) {
+                return false;
+            }
+            paused = false;
+            LOG.debug("Resumed {}", this);
+            if (!running) {
+                // a running execution will take care of rescheduling on its own
+                reschedule(true);
+            }
+            return true;
+        }
+        
+        /**
+         * Replaces the trigger. The pending run, if any, is replaced by a run
+         * satisfying the new trigger. A running execution will use the new trigger
+         * when rescheduling.
+         * 
+         * @param next the new trigger
+         * @return true if the trigger has been replaced, false if this job has been cancelled
+         */
+        public synchronized boolean update(Trigger next) {
+            if (cancelled) {
+                return false;
+            }
+            trigger = next;
+            effective = effective(next);
+            LOG.debug("Updated {} to '{}'", this, next);
+            if (!paused && !running) {
+                cancelPending();
+                reschedule(true);
+            }
+            return true;
+        }
+        
+        /**
+         * Called by the timer if the executor of this job rejected a run.
+         * The rejected run is treated as skipped misfire.
+         * 
+         * @param scheduled the generation of the rejected run
+         */
+        private synchronized void rejected(long scheduled) {
+            if (scheduled == generation && !running && !cancelled && !paused) {
+                misfired(1L);
+                skip();
+            }
+        }
+        
+        /**
+         * Replaces the pending run by an immediate one.
+         * 
+         * @return true if fired, false if this job is running, paused or cancelled
+         */
+        public synchronized boolean fire() {
+            if (cancelled || paused || running) {
+                return false;
+            }
+            cancelPending();
+            LOG.debug("Firing {} now", this);
+            schedule(clock.currentTimeMillis(), CronEvent.Type.SCHEDULED);
+            return true;
+        }
+        
+        /**
+         * Takes a snapshot of this job without acquiring its monitor.
+         * 
+         * @return a new snapshot
+         */
+        public JobInfo snapshot() {
+            final JobInfo.State current = running ? JobInfo.State.RUNNING : 
+                paused ? JobInfo.State.PAUSED : JobInfo.State.SCHEDULED;
+            final long next = current == JobInfo.State.SCHEDULED ? scheduledAt : -1L;
+            return new JobInfo(id, options, effective.toString(), current, next, startedAt, finishedAt,
+                runs.get(), failures.get(), overruns.get(), misfires.get(), durations, jitters);
+        }
+        
+        public synchronized boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            cancelPending();
+            unregister(this);
+            LOG.debug("Cancelled {}", this);
+            return true;
+        }
+        
+        @Override
+        public String toString() {
+            if (options.getName() == null) {
+                return "Job [" + id + "] " + runnable;
+            } else {
+                return "Job [" + id + "] " + options.getName();
+            }
+        }
+        
+        /**
+         * A single scheduled run of the enclosing {@link Job}.
+         *
+         * @since 1.3
+         * @author Willi Schoenborn
+         */
+        private final class ScheduledRun implements Runnable {
+            
+            private final long generation;
+            
+            private final long time;
+            
+            private final PrecisionTimer timer;
+            
+            public ScheduledRun(long generation, long time, PrecisionTimer timer) {
+                this.generation = generation;
+                this.time = time;
+                this.timer = timer;
+            }
+            
+            /**
+             * Runs on the timer. Records the firing accuracy and hands the actual execution
+             * over to the bulkhead or executor, if any, once all exclusion groups are free.
+             */
+            @Override
+            public void run() {
+                final long jitter;
+                if (timer == null) {
+                    jitter = TimeUnit.MILLISECONDS.toMicros(clock.currentTimeMillis() - time);
                 } else {
-                    // may save some time here
-                    if (LOG.isInfoEnabled()) {
-                        final TimeUnit human = TimeUnits.forMortals(delay, TimeUnit.MILLISECONDS);
-                        LOG.info("Scheduling {} to run again in {} {}", new Object[] {
-                            runnable, human.convert(delay, TimeUnit.MILLISECONDS), human.name().toLowerCase()
-                        });
+                    jitter = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - timer.toNanos(time));
+                }
+                jitters.record(Math.abs(jitter));
+                lateness.record(Math.max(0L, clock.currentTimeMillis() - scheduledAt));
+                if (options.getExclusionGroups().isEmpty()) {
+                    dispatch(new Handoff(generation, null));
+                } else {
+                    final MutualExclusion.Lease lease = getMutualExclusion().lease(options.getExclusionGroups());
+                    final Handoff handoff = new Handoff(generation, lease);
+                    lease.acquire(new Runnable() {
+                        
+                        @Override
+                        public void run() {
+                            dispatch(handoff);
+                        }
+                        
+                    });
+                }
+            }
+            
+            /**
+             * Hands the given run over to the bulkhead or executor, if any. Deferred, high resolution
+             * and tenant runs of jobs without executor are handed over to the scheduler.
+             * 
+             * @param handoff the run
+             */
+            private void dispatch(Handoff handoff) {
+                final Executor configured = executor == null ? DefaultCronService.this.executor : executor;
+                // deferred runs start on the thread releasing the conflicting lease, running them inline
+                // would nest every deferred run into the previous one; high resolution runs start on the
+                // precision timer, which must not be blocked by the run itself; runs of tenants can only
+                // be dispatched fairly if they are handed over to an executor
+                final boolean handOver = handoff.isDeferred() || timer != null || options.getTenant() != null;
+                final Executor target = configured == null && handOver ? scheduler : configured;
+                if (bulkhead != null) {
+                    if (!bulkhead.submit(handoff, target)) {
+                        LOG.warn("{} is saturated, skipping run of {}", bulkhead, Job.this);
+                        handoff.release();
+                        rejected(generation);
                     }
-                    schedule(this, delay);
+                } else if (target != null && options.getTenant() != null) {
+                    getFairDispatcher().submit(options.getTenant(), handoff, target, scheduledAt);
+                } else if (target == null) {
+                    handoff.run();
+                } else {
+                    try {
+                        target.execute(handoff);
+                    } catch (RejectedExecutionException e) {
+                        handoff.rejected();
+                    }
+                }
+            }
+            
+            @Override
+            public String toString() {
+                return Job.this.toString();
+            }
+            
+        }
+        
+        /**
+         * The execution of a single run of the enclosing {@link Job},
+         * handed over from the timer to the executing thread.
+         *
+         * @since 1.3
+         * @author Willi Schoenborn
+         */
+        private final class Handoff implements Bulkhead.Task {
+            
+            private final long generation;
+            
+            /**
+             * The held exclusion groups, null if the job is not mutually exclusive.
+             */
+            private final MutualExclusion.Lease lease;
+            
+            public Handoff(long generation, MutualExclusion.Lease lease) {
+                this.generation = generation;
+                this.lease = lease;
+            }
+            
+            @Override
+            public void run() {
+                try {
+                    Job.this.run(generation);
+                } finally {
+                    release();
                 }
             }
+            
+            @Override
+            public void rejected() {
+                LOG.warn("Executor rejected run of {}", Job.this);
+                release();
+                Job.this.rejected(generation);
+            }
+            
+            /**
+             * Checks whether this run had to wait for a conflicting run of one of its exclusion groups.
+             * 
+             * @return true if this run has been deferred, false otherwise
+             */
+            public boolean isDeferred() {
+                return lease != null && lease.isDeferred();
+            }
+            
+            /**
+             * Releases the exclusion groups, if any, which starts deferred runs of other jobs.
+             */
+            private void release() {
+                if (lease != null) {
+                    lease.release();
+                }
+            }
+            
+            @Override
+            public String toString() {
+                return Job.this.toString();
+            }
+            
         }
         
+        /**
+         * A single run of the enclosing {@link Job}. Used as watchdog
+         * which interrupts the executing thread once the execution timeout is exceeded.
+         *
+         * @since 1.3
+         * @author Willi Schoenborn
+         */
+        private final class Execution implements Runnable {
+            
+            private final Thread thread;
+            
+            private boolean finished;
+            
+            private boolean interrupted;
+            
+            public Execution(Thread thread) {
+                this.thread = thread;
+            }
+            
+            @Override
+            public void run() {
+                synchronized (this) {
+                    if (finished) {
+                        return;
+                    }
+                    interrupted = true;
+                    thread.interrupt();
+                }
+                
+                overruns.incrementAndGet();
+                DefaultCronService.this.overruns.incrementAndGet();
+                // interrupts are cooperative, the job stays running and is rescheduled by its own thread
+                LOG.warn("{} exceeded its execution timeout, interrupting {}", runnable, thread);
+            }
+            
+            public void finish() {
+                final boolean clear;
+                synchronized (this) {
+                    finished = true;
+                    clear = interrupted;
+                }
+                if (clear) {
+                    // don't leak our interrupt into the next task of the pooled thread
+                    Thread.interrupted();
+                }
+            }
+        
+        }
+    
+    }
+    
+    /**
+     * The lifecycle states of a {@link DefaultCronService}. The only valid
+     * transitions are running to draining and draining to stopped.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static enum State {
+        
+        /**
+         * Jobs are scheduled and executed.
+         */
+        RUNNING,
+        
+        /**
+         * No new runs are scheduled or started, executions in progress are awaited.
+         */
+        DRAINING,
+        
+        /**
+         * All executions have been finished or abandoned.
+         */
+        STOPPED;
+        
     }
     
     private boolean isDisposed() {
-        return disposed;
+        return state.get() != State.RUNNING;
     }
     
     @Override
     public void dispose() throws LifecycleException {
-        final Set<Future<?>> running = Sets.newHashSet();
-        for (Future<?> future : futures.values()) {
-            if (future.isDone()) {
-                LOG.trace("No need to dispose {} (is already done)", future);
-            } else if (future.cancel(false)) {
-                LOG.debug("Successfully cancelled {}", future);
-            } else {
-                running.add(future);
-            }
+        if (!state.compareAndSet(State.RUNNING, State.DRAINING)) {
+            LOG.debug("Cron service has already been disposed");
+            return;
         }
         
-        final Iterator<Future<?>> iterator = running.iterator();
+        // from now on, no job will be scheduled or start running
+        final Set<Job> commands = Sets.newHashSet();
+        commands.addAll(jobs.values());
+        commands.addAll(futures.keySet());
+        final List<Job> running = Lists.newArrayList();
+        for (Job command : commands) {
+            if (command.drain()) {
+                running.add(command);
+            }
+        }
+        LOG.debug("Cancelled pending runs of {} jobs, waiting for {} running jobs", commands.size(), running.size());
         
-        while (iterator.hasNext()) {
-            final Future<?> future = iterator.next();
+        final long timeout = taskShutdownTimeoutUnit.toMillis(taskShutdownTimeout);
+        for (Job command : running) {
             try {
-                future.get(taskShutdownTimeout, taskShutdownTimeoutUnit);
+                if (!command.awaitIdle(timeout)) {
+                    final TimeUnit humanUnit = TimeUnits.forMortals(taskShutdownTimeout, taskShutdownTimeoutUnit);
+                    final long human = humanUnit.convert(taskShutdownTimeout, taskShutdownTimeoutUnit);
+                    LOG.warn("{} has exceeded the maximum wait limit of {} {}", new Object[] {
+                        command, human, humanUnit.name().toLowerCase()
+                    });
+                }
             } catch (InterruptedException e) {
-                LOG.info("Interrupted while waiting for {}", future);
-            } catch (CancellationException e) {
-                LOG.info("{} has been cancelled during wait", future);
-            } catch (ExecutionException e) {
-                LOG.error("Execution of " + future + " failed with an exception", e);
-            } catch (TimeoutException e) {
-                final TimeUnit humanUnit = TimeUnits.forMortals(taskShutdownTimeout, taskShutdownTimeoutUnit);
-                final long human = humanUnit.convert(taskShutdownTimeout, taskShutdownTimeoutUnit);
-                LOG.warn("{} has exceeded the maximum wait limit of {} {}", new Object[] {
-                    future, human, humanUnit.name().toLowerCase()
-                });
-            } finally {
-                iterator.remove();
+                LOG.info("Interrupted while waiting for {}", command);
+                Thread.currentThread().interrupt();
+                break;
             }
         }
+        
+        snapshot();
+        
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        
+        synchronized (this) {
+            state.set(State.STOPPED);
+            if (watchdog != null) {
+                watchdog.shutdownNow();
+            }
+            if (precisionTimer != null) {
+                precisionTimer.shutdown();
+            }
+        }
+        LOG.info("Cron service stopped");
     }
-    
+
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Lock free recorder of durations. Mean values cover all recorded samples,
+ * percentiles are computed from a fixed size window of the most recent samples.
+ * Recording never blocks, computing a percentile costs a copy and sort
+ * of the window. The window is allocated on the first recorded sample, which
+ * keeps idle samplers cheap.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class DurationSampler {
+    
+    private static final int DEFAULT_WINDOW = 256;
+    
+    private final int size;
+    
+    private final AtomicReference<AtomicLongArray> window = new AtomicReference<AtomicLongArray>();
+    
+    private final AtomicLong count = new AtomicLong();
+    
+    private final AtomicLong total = new AtomicLong();
+    
+    public DurationSampler() {
+        this(DEFAULT_WINDOW);
+    }
+    
+    public DurationSampler(int size) {
+        Preconditions.checkArgument(size > 0, "Size must be positive");
+        this.size = size;
+    }
+    
+    private AtomicLongArray window() {
+        final AtomicLongArray current = window.get();
+        if (current == null) {
+            window.compareAndSet(null, new AtomicLongArray(size));
+            return window.get();
+        } else {
+            return current;
+        }
+    }
+    
+    /**
+     * Records the given duration.
+     *
+     * @param duration the duration in milliseconds
+     */
+    public void record(long duration) {
+        final long index = count.getAndIncrement();
+        window().set((int) (index % size), duration);
+        total.addAndGet(duration);
+    }
+    
+    /**
+     * Provides the number of recorded samples.
+     *
+     * @return the number of samples
+     */
+    public long getCount() {
+        return count.get();
+    }
+    
+    /**
+     * Provides the mean of all recorded samples.
+     *
+     * @return the mean in milliseconds or 0 if nothing has been recorded yet
+     */
+    public double getMean() {
+        final long samples = count.get();
+        return samples == 0 ? 0d : (double) total.get() / samples;
+    }
+    
+    /**
+     * Provides the given percentile of the most recent samples.
+     *
+     * @param percentile the percentile, between 0 exclusive and 100 inclusive
+     * @return the percentile in milliseconds or 0 if nothing has been recorded yet
+     * @throws IllegalArgumentException if percentile is out of range
+     */
+    public long getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100, 
+            "Percentile must be in (0, 100], but was %s", percentile);
+        final AtomicLongArray current = window.get();
+        final int length = (int) Math.min(count.get(), size);
+        if (current == null || length == 0) {
+            return 0L;
+        }
+        final long[] samples = new long[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = current.get(i);
+        }
+        Arrays.sort(samples);
+        final int rank = (int) Math.ceil(percentile / 100d * length) - 1;
+        return samples[Math.max(0, rank)];
+    }
+
+}
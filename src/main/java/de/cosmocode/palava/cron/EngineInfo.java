@@ -0,0 +1,208 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Immutable snapshot of engine level statistics of a {@link CronService},
+ * as provided by {@link CronService#getEngineInfo()}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class EngineInfo {
+    
+    private final int jobs;
+    
+    private final int pendingRuns;
+    
+    private final int queueDepth;
+    
+    private final int poolSize;
+    
+    private final int activeWorkers;
+    
+    private final long overruns;
+    
+    private final long misfires;
+    
+    private final double meanLateness;
+    
+    private final long p99Lateness;
+    
+    private final long poolGrowths;
+    
+    private final long poolShrinks;
+    
+    private final String poolDecision;
+    
+    EngineInfo(int jobs, int pendingRuns, int queueDepth, int poolSize, int activeWorkers, 
+        long overruns, long misfires, DurationSampler lateness, WorkerPool pool) {
+        this.jobs = jobs;
+        this.pendingRuns = pendingRuns;
+        this.queueDepth = queueDepth;
+        this.poolSize = poolSize;
+        this.activeWorkers = activeWorkers;
+        this.overruns = overruns;
+        this.misfires = misfires;
+        this.meanLateness = lateness.getMean();
+        this.p99Lateness = lateness.getPercentile(99);
+        this.poolGrowths = pool == null ? 0L : pool.getGrowths();
+        this.poolShrinks = pool == null ? 0L : pool.getShrinks();
+        this.poolDecision = pool == null ? null : pool.getDecision();
+    }
+    
+    /**
+     * Provides the number of registered jobs.
+     *
+     * @since 1.3
+     * @return the number of jobs
+     */
+    public int getJobs() {
+        return jobs;
+    }
+    
+    /**
+     * Provides the number of runs waiting for their fire time.
+     *
+     * @since 1.3
+     * @return the number of pending runs
+     */
+    public int getPendingRuns() {
+        return pendingRuns;
+    }
+    
+    /**
+     * Provides the number of tasks queued in the underlying scheduler and worker pool.
+     *
+     * @since 1.3
+     * @return the queue depth or -1 if the scheduler does not expose its queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+    
+    /**
+     * Provides the number of worker threads of the {@link Cron} executor or,
+     * if there is none, of the scheduler.
+     *
+     * @since 1.3
+     * @return the pool size or -1 if the scheduler does not expose its pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+    
+    /**
+     * Provides the number of workers currently executing a job.
+     *
+     * @since 1.3
+     * @return the number of active workers
+     */
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+    
+    /**
+     * Provides the fraction of busy workers.
+     *
+     * @since 1.3
+     * @return the utilization between 0 and 1 or -1 if the pool size is unknown
+     */
+    public double getUtilization() {
+        return poolSize > 0 ? Math.min(1d, (double) activeWorkers / poolSize) : -1d;
+    }
+    
+    /**
+     * Provides the number of runs which exceeded their execution timeout.
+     *
+     * @since 1.3
+     * @return the number of overruns
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+    
+    /**
+     * Provides the number of overdue, coalesced and skipped runs.
+     *
+     * @since 1.3
+     * @return the number of misfires
+     */
+    public long getMisfires() {
+        return misfires;
+    }
+    
+    /**
+     * Provides the mean delay between the scheduled time and the firing of all runs
+     * by the timer, which excludes time spent waiting for a worker.
+     *
+     * @since 1.3
+     * @return the mean lateness in milliseconds
+     */
+    public double getMeanLateness() {
+        return meanLateness;
+    }
+    
+    /**
+     * Provides the 99th percentile delay between the scheduled time and the
+     * firing of the most recent runs by the timer.
+     *
+     * @since 1.3
+     * @return the 99th percentile lateness in milliseconds
+     */
+    public long getP99Lateness() {
+        return p99Lateness;
+    }
+    
+    /**
+     * Provides the number of times the worker pool has been grown by the {@link PoolTuner}.
+     *
+     * @since 1.3
+     * @return the number of growths, 0 if the pool is not tuned
+     */
+    public long getPoolGrowths() {
+        return poolGrowths;
+    }
+    
+    /**
+     * Provides the number of times the worker pool has been shrunk by the {@link PoolTuner}.
+     *
+     * @since 1.3
+     * @return the number of shrinks, 0 if the pool is not tuned
+     */
+    public long getPoolShrinks() {
+        return poolShrinks;
+    }
+    
+    /**
+     * Provides the most recent resize decision of the {@link PoolTuner},
+     * including the load which caused it.
+     *
+     * @since 1.3
+     * @return the decision or null if the pool has never been resized
+     */
+    public String getPoolDecision() {
+        return poolDecision;
+    }
+    
+    @Override
+    public String toString() {
+        return "EngineInfo [jobs=" + jobs + ", pendingRuns=" + pendingRuns + ", queueDepth=" + queueDepth + 
+            ", activeWorkers=" + activeWorkers + "/" + poolSize + ", meanLateness=" + meanLateness + "]";
+    }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * A calendar of time ranges in which scheduled tasks must not run, e.g. public
+ * holidays or maintenance windows. Exclusions are applied while computing
+ * the next run, so excluded runs are never scheduled at all.
+ * Use {@link ExclusionCalendars} to create instances.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface ExclusionCalendar {
+    
+    /**
+     * Checks whether the given time is excluded.
+     * 
+     * @since 1.3
+     * @param time the time in milliseconds since the epoch
+     * @return true if time is excluded, false otherwise
+     */
+    boolean isExcluded(long time);
+    
+    /**
+     * Computes the first time which is not excluded, starting at the given time.
+     * 
+     * @since 1.3
+     * @param time the time in milliseconds since the epoch
+     * @return time itself if it is not excluded, the end of the exclusion
+     *         containing time otherwise or -1 if there is no such time
+     */
+    long nextIncluded(long time);
+
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Static factory methods for {@link ExclusionCalendar}s.
+ *
+ * <p>
+ *   Absolute exclusions like holidays are stored as sorted, merged intervals and
+ *   looked up using binary search. Recurring weekly windows are stored as a bitset
+ *   with one bit per minute of the week. Both answer in constant or logarithmic
+ *   time, regardless of how far in the future the requested time is.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class ExclusionCalendars {
+    
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    
+    private static final long MILLIS_PER_MINUTE = 60L * 1000L;
+    
+    /**
+     * The epoch (1970-01-01) was a thursday, which is day 4 of a week starting on sunday.
+     */
+    private static final int EPOCH_DAY_OF_WEEK = Calendar.THURSDAY - Calendar.SUNDAY;
+    
+    /**
+     * Upper bound of rounds used to find an included time in a union of calendars.
+     */
+    private static final int MAX_ROUNDS = 1000;
+    
+    private ExclusionCalendars() {
+    
+    }
+    
+    /**
+     * Creates a new builder for calendars consisting of absolute time ranges.
+     *
+     * @since 1.3
+     * @return a new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Creates a calendar excluding the given days completely, e.g. public holidays.
+     *
+     * @since 1.3
+     * @param zone the time zone used to determine the start and end of each day
+     * @param days the days to exclude, the time of day is ignored
+     * @return a calendar excluding all given days
+     * @throws NullPointerException if zone or days is or contains null
+     */
+    public static ExclusionCalendar days(TimeZone zone, Date... days) {
+        Preconditions.checkNotNull(zone, "Zone");
+        Preconditions.checkNotNull(days, "Days");
+        final Builder builder = builder();
+        final Calendar calendar = Calendar.getInstance(zone);
+        for (Date day : days) {
+            Preconditions.checkNotNull(day, "Day");
+            calendar.setTime(day);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            final long start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            builder.exclude(start, calendar.getTimeInMillis());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Creates a calendar excluding a weekly recurring window, e.g. a maintenance window.
+     * Windows are resolved to a granularity of one minute.
+     *
+     * @since 1.3
+     * @param zone the time zone the window is defined in
+     * @param dayOfWeek the day of week the window starts on, e.g. {@link Calendar#SUNDAY}
+     * @param hour the hour of day the window starts at
+     * @param minute the minute of hour the window starts at
+     * @param duration the length of the window, at most one week
+     * @param unit the unit of duration
+     * @return a calendar excluding the given window every week
+     * @throws IllegalArgumentException if any of the values is out of range
+     * @throws NullPointerException if zone or unit is null
+     */
+    public static ExclusionCalendar weekly(TimeZone zone, int dayOfWeek, int hour, int minute,
+        long duration, TimeUnit unit) {
+        Preconditions.checkNotNull(zone, "Zone");
+        Preconditions.checkArgument(dayOfWeek >= Calendar.SUNDAY && dayOfWeek <= Calendar.SATURDAY,
+            "Day of week must be between %s and %s, but was %s", Calendar.SUNDAY, Calendar.SATURDAY, dayOfWeek);
+        Preconditions.checkArgument(hour >= 0 && hour < 24, "Hour must be between 0 and 23, but was %s", hour);
+        Preconditions.checkArgument(minute >= 0 && minute < 60, "Minute must be between 0 and 59, but was %s", minute);
+        Preconditions.checkNotNull(unit, "Unit");
+        final long minutes = unit.toMinutes(duration);
+        Preconditions.checkArgument(minutes > 0 && minutes <= MINUTES_PER_WEEK,
+            "Duration must be between one minute and one week, but was %s %s", duration, unit);
+        
+        final BitSet excluded = new BitSet(MINUTES_PER_WEEK);
+        final int start = (dayOfWeek - Calendar.SUNDAY) * MINUTES_PER_DAY + hour * 60 + minute;
+        final int end = start + (int) minutes;
+        excluded.set(start, Math.min(end, MINUTES_PER_WEEK));
+        if (end > MINUTES_PER_WEEK) {
+            excluded.set(0, end - MINUTES_PER_WEEK);
+        }
+        return new WeeklyCalendar(zone, excluded);
+    }
+    
+    /**
+     * Combines the given calendars. A time is excluded by the union
+     * if it is excluded by at least one of the calendars.
+     *
+     * @since 1.3
+     * @param calendars the calendars to combine
+     * @return a calendar excluding everything any of the given calendars excludes
+     * @throws NullPointerException if calendars is or contains null
+     */
+    public static ExclusionCalendar union(ExclusionCalendar... calendars) {
+        Preconditions.checkNotNull(calendars, "Calendars");
+        if (calendars.length == 1) {
+            return Preconditions.checkNotNull(calendars[0], "Calendar");
+        } else {
+            return new UnionCalendar(ImmutableList.copyOf(Arrays.asList(calendars)));
+        }
+    }
+    
+    /**
+     * Builder for calendars consisting of absolute time ranges.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    public static final class Builder {
+        
+        private final List<long[]> ranges = Lists.newArrayList();
+        
+        private Builder() {
+        
+        }
+        
+        /**
+         * Excludes the given range.
+         *
+         * @since 1.3
+         * @param from the inclusive start in milliseconds since the epoch
+         * @param to the exclusive end in milliseconds since the epoch
+         * @return this builder
+         * @throws IllegalArgumentException if to is not after from
+         */
+        public Builder exclude(long from, long to) {
+            Preconditions.checkArgument(from < to, "Range end %s must be after start %s", to, from);
+            ranges.add(new long[] {from, to});
+            return this;
+        }
+        
+        /**
+         * Excludes the given range.
+         *
+         * @since 1.3
+         * @param from the inclusive start
+         * @param to the exclusive end
+         * @return this builder
+         * @throws NullPointerException if from or to is null
+         * @throws IllegalArgumentException if to is not after from
+         */
+        public Builder exclude(Date from, Date to) {
+            Preconditions.checkNotNull(from, "From");
+            Preconditions.checkNotNull(to, "To");
+            return exclude(from.getTime(), to.getTime());
+        }
+        
+        /**
+         * Builds the calendar. Overlapping and adjacent ranges are merged.
+         *
+         * @since 1.3
+         * @return a new calendar excluding all added ranges
+         */
+        public ExclusionCalendar build() {
+            final long[][] sorted = ranges.toArray(new long[ranges.size()][]);
+            Arrays.sort(sorted, new Comparator<long[]>() {
+                
+                @Override
+                public int compare(long[] left, long[] right) {
+                    return left[0] < right[0] ? -1 : left[0] == right[0] ? 0 : 1;
+                }
+            
+            });
+            final long[] starts = new long[sorted.length];
+            final long[] ends = new long[sorted.length];
+            int size = 0;
+            for (long[] range : sorted) {
+                if (size > 0 && range[0] <= ends[size - 1]) {
+                    ends[size - 1] = Math.max(ends[size - 1], range[1]);
+                } else {
+                    starts[size] = range[0];
+                    ends[size] = range[1];
+                    size++;
+                }
+            }
+            return new IntervalCalendar(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+        }
+    
+    }
+    
+    /**
+     * Calendar of sorted, disjoint and non adjacent ranges.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class IntervalCalendar implements ExclusionCalendar {
+        
+        private final long[] starts;
+        
+        private final long[] ends;
+        
+        public IntervalCalendar(long[] starts, long[] ends) {
+            this.starts = starts;
+            this.ends = ends;
+        }
+        
+        /**
+         * Finds the index of the last range starting at or before time.
+         */
+        private int indexOf(long time) {
+            final int index = Arrays.binarySearch(starts, time);
+            return index >= 0 ? index : -index - 2;
+        }
+        
+        @Override
+        public boolean isExcluded(long time) {
+            final int index = indexOf(time);
+            return index >= 0 && time < ends[index];
+        }
+        
+        @Override
+        public long nextIncluded(long time) {
+            final int index = indexOf(time);
+            return index >= 0 && time < ends[index] ? ends[index] : time;
+        }
+        
+        @Override
+        public String toString() {
+            return "IntervalCalendar [ranges=" + starts.length + "]";
+        }
+    
+    }
+    
+    /**
+     * Calendar of a weekly pattern, using one bit per minute of the week starting on sunday.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class WeeklyCalendar implements ExclusionCalendar {
+        
+        private final TimeZone zone;
+        
+        private final BitSet excluded;
+        
+        public WeeklyCalendar(TimeZone zone, BitSet excluded) {
+            this.zone = zone;
+            this.excluded = excluded;
+        }
+        
+        private int minuteOfWeek(long time) {
+            final long local = time + zone.getOffset(time);
+            final long minutes = floor(local, MILLIS_PER_MINUTE) + EPOCH_DAY_OF_WEEK * MINUTES_PER_DAY;
+            return (int) (minutes - floor(minutes, MINUTES_PER_WEEK) * MINUTES_PER_WEEK);
+        }
+        
+        private long floor(long value, long divisor) {
+            final long quotient = value / divisor;
+            return value % divisor < 0 ? quotient - 1 : quotient;
+        }
+        
+        @Override
+        public boolean isExcluded(long time) {
+            return excluded.get(minuteOfWeek(time));
+        }
+        
+        @Override
+        public long nextIncluded(long time) {
+            final int minute = minuteOfWeek(time);
+            if (!excluded.get(minute)) {
+                return time;
+            }
+            int next = excluded.nextClearBit(minute);
+            if (next >= MINUTES_PER_WEEK) {
+                next = excluded.nextClearBit(0) + MINUTES_PER_WEEK;
+                if (next >= 2 * MINUTES_PER_WEEK) {
+                    return -1L;
+                }
+            }
+            final long startOfMinute = floor(time, MILLIS_PER_MINUTE) * MILLIS_PER_MINUTE;
+            return startOfMinute + (next - minute) * MILLIS_PER_MINUTE;
+        }
+        
+        @Override
+        public String toString() {
+            return "WeeklyCalendar [zone=" + zone.getID() + ", excludedMinutes=" + excluded.cardinality() + "]";
+        }
+    
+    }
+    
+    /**
+     * Union of multiple calendars.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class UnionCalendar implements ExclusionCalendar {
+        
+        private final List<ExclusionCalendar> calendars;
+        
+        public UnionCalendar(List<ExclusionCalendar> calendars) {
+            this.calendars = calendars;
+        }
+        
+        @Override
+        public boolean isExcluded(long time) {
+            for (ExclusionCalendar calendar : calendars) {
+                if (calendar.isExcluded(time)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public long nextIncluded(long time) {
+            long current = time;
+            for (int round = 0; round < MAX_ROUNDS; round++) {
+                final long start = current;
+                for (ExclusionCalendar calendar : calendars) {
+                    current = calendar.nextIncluded(current);
+                    if (current == -1L) {
+                        return -1L;
+                    }
+                }
+                if (current == start) {
+                    return current;
+                }
+            }
+            return -1L;
+        }
+        
+        @Override
+        public String toString() {
+            return "UnionCalendar " + calendars;
+        }
+    
+    }
+
+}
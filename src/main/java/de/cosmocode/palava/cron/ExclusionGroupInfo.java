@@ -0,0 +1,129 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Immutable snapshot of the statistics of a single mutual exclusion group, as provided
+ * by {@link CronService#getExclusionGroups()}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class ExclusionGroupInfo {
+    
+    private final String name;
+    
+    private final boolean held;
+    
+    private final int waiting;
+    
+    private final long acquired;
+    
+    private final long deferred;
+    
+    private final double meanWait;
+    
+    private final long p99Wait;
+    
+    ExclusionGroupInfo(String name, boolean held, int waiting, long acquired, long deferred, DurationSampler waits) {
+        this.name = name;
+        this.held = held;
+        this.waiting = waiting;
+        this.acquired = acquired;
+        this.deferred = deferred;
+        this.meanWait = waits.getMean();
+        this.p99Wait = waits.getPercentile(99);
+    }
+    
+    /**
+     * Provides the group name.
+     *
+     * @since 1.3
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Checks whether a run of this group is currently in progress.
+     *
+     * @since 1.3
+     * @return true if the group is held
+     */
+    public boolean isHeld() {
+        return held;
+    }
+    
+    /**
+     * Provides the number of deferred runs waiting for this group.
+     *
+     * @since 1.3
+     * @return the number of waiting runs
+     */
+    public int getWaiting() {
+        return waiting;
+    }
+    
+    /**
+     * Provides the number of runs which held this group since startup.
+     *
+     * @since 1.3
+     * @return the number of acquisitions
+     */
+    public long getAcquired() {
+        return acquired;
+    }
+    
+    /**
+     * Provides the number of runs deferred due to a conflicting run of this group since startup.
+     *
+     * @since 1.3
+     * @return the number of deferred runs
+     */
+    public long getDeferred() {
+        return deferred;
+    }
+    
+    /**
+     * Provides the mean time runs waited for this group, including runs which did not wait at all.
+     *
+     * @since 1.3
+     * @return the mean wait in milliseconds
+     */
+    public double getMeanWait() {
+        return meanWait;
+    }
+    
+    /**
+     * Provides the 99th percentile time the most recent runs waited for this group.
+     *
+     * @since 1.3
+     * @return the 99th percentile wait in milliseconds
+     */
+    public long getP99Wait() {
+        return p99Wait;
+    }
+    
+    @Override
+    public String toString() {
+        return "ExclusionGroupInfo [name=" + name + ", held=" + held + ", waiting=" + waiting + 
+            ", acquired=" + acquired + ", deferred=" + deferred + ", meanWait=" + meanWait + 
+            ", p99Wait=" + p99Wait + "]";
+    }
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.text.ParseException;
+import java.util.BitSet;
+
+import org.quartz.CronExpression;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Static analysis of a {@link CronExpression}. Intervals and firing frequencies are
+ * computed from the parsed fields using bitset arithmetic instead of iterating
+ * {@link CronExpression#getNextValidTimeAfter(java.util.Date)}, which makes
+ * the analysis cheap even for expressions firing every second.
+ *
+ * <p>
+ *   Days are evaluated over a cycle of 28 years, which repeats both weekdays and leap
+ *   years between 1901 and 2099. The year field is ignored and {@code W} is approximated
+ *   by the given day of month. All times refer to the time zone of the expression.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class ExpressionAnalysis {
+    
+    /**
+     * Number of minutes per day.
+     */
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    
+    private static final int FIRST_YEAR = 2001;
+    
+    private static final int CYCLE_YEARS = 28;
+    
+    /**
+     * 2001-01-01 was a monday, quartz counts weekdays starting with 1 for sunday.
+     */
+    private static final int FIRST_DAY_OF_WEEK = 2;
+    
+    private static final int[] MONTH_LENGTHS = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    
+    private final CronExpression expression;
+    
+    private final BitSet seconds;
+    
+    private final BitSet minutes;
+    
+    private final BitSet days;
+    
+    private final int cycleDays;
+    
+    private final long minInterval;
+    
+    private final long maxInterval;
+    
+    private ExpressionAnalysis(CronExpression expression) throws ParseException {
+        this.expression = expression;
+        final ExpressionFields fields = new ExpressionFields(expression);
+        this.seconds = fields.getSeconds();
+        
+        final BitSet minutesOfHour = fields.getMinutes();
+        final BitSet hours = fields.getHours();
+        this.minutes = new BitSet(MINUTES_PER_DAY);
+        for (int h = hours.nextSetBit(0); h >= 0; h = hours.nextSetBit(h + 1)) {
+            for (int m = minutesOfHour.nextSetBit(0); m >= 0; m = minutesOfHour.nextSetBit(m + 1)) {
+                minutes.set(h * 60 + m);
+            }
+        }
+        
+        this.days = new BitSet();
+        this.cycleDays = computeDays(fields, days);
+        
+        if (seconds.isEmpty() || minutes.isEmpty() || days.isEmpty()) {
+            this.minInterval = -1L;
+            this.maxInterval = -1L;
+        } else {
+            // gaps between firing minutes, either within a day or across firing days
+            final int dayWrap = minutes.nextSetBit(0) - (minutes.length() - 1);
+            final long minMinuteGap = Math.min(innerMin(minutes), 
+                cyclicMin(days, cycleDays) * (long) MINUTES_PER_DAY + dayWrap);
+            final long maxMinuteGap = Math.max(innerMax(minutes), 
+                cyclicMax(days, cycleDays) * (long) MINUTES_PER_DAY + dayWrap);
+            
+            // gaps between firing seconds, either within a minute or across firing minutes
+            final int minuteWrap = seconds.nextSetBit(0) - (seconds.length() - 1);
+            this.minInterval = Math.min(innerMin(seconds), minMinuteGap * 60 + minuteWrap) * 1000L;
+            this.maxInterval = Math.max(innerMax(seconds), maxMinuteGap * 60 + minuteWrap) * 1000L;
+        }
+    }
+    
+    /**
+     * Analyzes the given cron expression.
+     * 
+     * @since 1.3
+     * @param expression the expression
+     * @return the analysis of expression
+     * @throws NullPointerException if expression is null
+     */
+    public static ExpressionAnalysis of(CronExpression expression) {
+        Preconditions.checkNotNull(expression, "Expression");
+        try {
+            return new ExpressionAnalysis(expression);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    /**
+     * Analyzes the given cron expression.
+     * 
+     * @since 1.3
+     * @param expression the expression
+     * @return the analysis of expression
+     * @throws NullPointerException if expression is null
+     * @throws IllegalArgumentException if expression is no valid cron expression
+     */
+    public static ExpressionAnalysis of(String expression) {
+        Preconditions.checkNotNull(expression, "Expression");
+        try {
+            return new ExpressionAnalysis(new CronExpression(expression));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    private static int computeDays(ExpressionFields fields, BitSet days) {
+        final BitSet months = fields.getMonths();
+        final BitSet daysOfMonth = fields.getDaysOfMonth();
+        final BitSet daysOfWeek = fields.getDaysOfWeek();
+        final boolean anyDayOfMonth = fields.isDayOfMonthUnspecified();
+        final boolean anyDayOfWeek = fields.isDayOfWeekUnspecified();
+        final int nth = fields.getNthDayOfWeek();
+        
+        int index = 0;
+        int dayOfWeek = FIRST_DAY_OF_WEEK;
+        for (int year = FIRST_YEAR; year < FIRST_YEAR + CYCLE_YEARS; year++) {
+            for (int month = 1; month <= 12; month++) {
+                final int length = month == 2 && year % 4 == 0 ? 29 : MONTH_LENGTHS[month - 1];
+                final boolean monthMatches = months.get(month);
+                for (int day = 1; day <= length; day++) {
+                    if (monthMatches && 
+                        (anyDayOfMonth || matchesDayOfMonth(fields, daysOfMonth, day, length)) &&
+                        (anyDayOfWeek || matchesDayOfWeek(fields, daysOfWeek, nth, day, dayOfWeek, length))) {
+                        days.set(index);
+                    }
+                    index++;
+                    dayOfWeek = dayOfWeek % 7 + 1;
+                }
+            }
+        }
+        return index;
+    }
+    
+    private static boolean matchesDayOfMonth(ExpressionFields fields, BitSet daysOfMonth, int day, int length) {
+        if (fields.isLastDayOfMonth()) {
+            return day == length;
+        } else {
+            return daysOfMonth.get(day);
+        }
+    }
+    
+    private static boolean matchesDayOfWeek(ExpressionFields fields, BitSet daysOfWeek, int nth, 
+        int day, int dayOfWeek, int length) {
+        if (!daysOfWeek.get(dayOfWeek)) {
+            return false;
+        } else if (fields.isLastDayOfWeek()) {
+            return day > length - 7;
+        } else if (nth > 0) {
+            return (day - 1) / 7 + 1 == nth;
+        } else {
+            return true;
+        }
+    }
+    
+    /**
+     * Computes the smallest distance between two successive set bits.
+     */
+    private static long innerMin(BitSet bits) {
+        long min = Long.MAX_VALUE;
+        for (int i = bits.nextSetBit(0), j = bits.nextSetBit(i + 1); j >= 0; i = j, j = bits.nextSetBit(j + 1)) {
+            min = Math.min(min, j - i);
+        }
+        return min;
+    }
+    
+    /**
+     * Computes the largest distance between two successive set bits.
+     */
+    private static long innerMax(BitSet bits) {
+        long max = 0L;
+        for (int i = bits.nextSetBit(0), j = bits.nextSetBit(i + 1); j >= 0; i = j, j = bits.nextSetBit(j + 1)) {
+            max = Math.max(max, j - i);
+        }
+        return max;
+    }
+    
+    private static long cyclicMin(BitSet bits, int cycle) {
+        return Math.min(innerMin(bits), cycle - (bits.length() - 1) + bits.nextSetBit(0));
+    }
+    
+    private static long cyclicMax(BitSet bits, int cycle) {
+        return Math.max(innerMax(bits), cycle - (bits.length() - 1) + bits.nextSetBit(0));
+    }
+    
+    /**
+     * Provides the analyzed expression.
+     * 
+     * @since 1.3
+     * @return the expression
+     */
+    public CronExpression getExpression() {
+        return expression;
+    }
+    
+    /**
+     * Provides the shortest time between two successive firings.
+     * 
+     * @since 1.3
+     * @return the minimum interval in milliseconds or -1 if the expression never fires
+     */
+    public long getMinInterval() {
+        return minInterval;
+    }
+    
+    /**
+     * Provides the longest time between two successive firings.
+     * 
+     * @since 1.3
+     * @return the maximum interval in milliseconds or -1 if the expression never fires
+     */
+    public long getMaxInterval() {
+        return maxInterval;
+    }
+    
+    /**
+     * Provides the number of firings within each minute which fires at all.
+     * 
+     * @since 1.3
+     * @return the number of firings per firing minute
+     */
+    public int getFiringsPerMinute() {
+        return seconds.cardinality();
+    }
+    
+    /**
+     * Checks whether the expression fires during the given minute of a firing day.
+     * 
+     * @since 1.3
+     * @param minuteOfDay the minute of the day, starting at 0 for midnight
+     * @return true if the expression fires during the given minute
+     * @throws IllegalArgumentException if minuteOfDay is not within [0, {@value #MINUTES_PER_DAY})
+     */
+    public boolean firesAt(int minuteOfDay) {
+        Preconditions.checkArgument(minuteOfDay >= 0 && minuteOfDay < MINUTES_PER_DAY,
+            "Minute %s is out of range", minuteOfDay);
+        return minutes.get(minuteOfDay);
+    }
+    
+    /**
+     * Provides all firing minutes of a firing day.
+     * 
+     * @return a mutable copy of the firing minutes, starting at 0 for midnight
+     */
+    BitSet getMinutes() {
+        return (BitSet) minutes.clone();
+    }
+    
+    /**
+     * Provides the highest number of firings during a single hour.
+     * 
+     * @since 1.3
+     * @return the peak number of firings per hour
+     */
+    public int getPeakFiringsPerHour() {
+        int peak = 0;
+        for (int hour = 0; hour < 24; hour++) {
+            peak = Math.max(peak, minutes.get(hour * 60, hour * 60 + 60).cardinality());
+        }
+        return peak * getFiringsPerMinute();
+    }
+    
+    /**
+     * Provides the number of firings during a day on which the expression fires at all.
+     * 
+     * @since 1.3
+     * @return the number of firings per firing day
+     */
+    public int getFiringsPerDay() {
+        return minutes.cardinality() * getFiringsPerMinute();
+    }
+    
+    /**
+     * Provides the average number of firings per day, taking days without
+     * any firing into account.
+     * 
+     * @since 1.3
+     * @return the average number of firings per day
+     */
+    public double getAverageFiringsPerDay() {
+        return (double) getFiringsPerDay() * days.cardinality() / cycleDays;
+    }
+    
+    @Override
+    public String toString() {
+        return "ExpressionAnalysis [expression=" + expression.getCronExpression() + 
+            ", minInterval=" + minInterval + ", maxInterval=" + maxInterval + 
+            ", firingsPerDay=" + getFiringsPerDay() + ", peakFiringsPerHour=" + getPeakFiringsPerHour() + "]";
+    }
+
+}
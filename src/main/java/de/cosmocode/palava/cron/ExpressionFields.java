@@ -0,0 +1,102 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.text.ParseException;
+import java.util.BitSet;
+import java.util.TreeSet;
+
+import org.quartz.CronExpression;
+
+/**
+ * Exposes the parsed fields of a {@link CronExpression} as {@link BitSet}s.
+ * Quartz keeps them in protected {@link TreeSet}s which also contain marker values
+ * for {@code *} and {@code ?}, those are filtered out here.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class ExpressionFields extends CronExpression {
+    
+    private static final long serialVersionUID = -1916413497431283657L;
+    
+    public ExpressionFields(CronExpression expression) throws ParseException {
+        super(expression.getCronExpression());
+        setTimeZone(expression.getTimeZone());
+    }
+    
+    private static BitSet toBitSet(TreeSet<?> set, int min, int max) {
+        final BitSet bits = new BitSet(max + 1);
+        for (Object value : set) {
+            final int i = Integer.class.cast(value).intValue();
+            if (i >= min && i <= max) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+    
+    public BitSet getSeconds() {
+        return toBitSet(seconds, 0, 59);
+    }
+    
+    public BitSet getMinutes() {
+        return toBitSet(minutes, 0, 59);
+    }
+    
+    public BitSet getHours() {
+        return toBitSet(hours, 0, 23);
+    }
+    
+    public BitSet getDaysOfMonth() {
+        return toBitSet(daysOfMonth, 1, 31);
+    }
+    
+    public BitSet getMonths() {
+        return toBitSet(months, 1, 12);
+    }
+    
+    /**
+     * Provides the days of week, 1 being sunday.
+     * 
+     * @return the days of week
+     */
+    public BitSet getDaysOfWeek() {
+        return toBitSet(daysOfWeek, 1, 7);
+    }
+    
+    public boolean isDayOfMonthUnspecified() {
+        return daysOfMonth.contains(Integer.valueOf(NO_SPEC_INT));
+    }
+    
+    public boolean isDayOfWeekUnspecified() {
+        return daysOfWeek.contains(Integer.valueOf(NO_SPEC_INT));
+    }
+    
+    public boolean isLastDayOfMonth() {
+        return lastdayOfMonth;
+    }
+    
+    public boolean isLastDayOfWeek() {
+        return lastdayOfWeek;
+    }
+    
+    public int getNthDayOfWeek() {
+        return nthdayOfWeek;
+    }
+
+}
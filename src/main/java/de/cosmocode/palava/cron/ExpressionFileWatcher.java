@@ -0,0 +1,152 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.Initializable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * Watches a properties file mapping job names to cron expressions and
+ * {@link CronService#reload(Map) reloads} the {@link CronService} whenever the
+ * file changes. The file is checked for modifications periodically using
+ * the {@link Cron} scheduler. Invalid or unreadable files are logged and
+ * read again on the next check, until they have been reloaded successfully.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class ExpressionFileWatcher implements Initializable, Runnable, Disposable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpressionFileWatcher.class);
+    
+    private final CronService service;
+    
+    private final ScheduledExecutorService scheduler;
+    
+    private final File file;
+    
+    private long interval = 10;
+    
+    private TimeUnit intervalUnit = TimeUnit.SECONDS;
+    
+    private long lastModified;
+    
+    private Future<?> future;
+    
+    @Inject
+    public ExpressionFileWatcher(CronService service, @Cron ScheduledExecutorService scheduler,
+        @Named(CronConfig.RELOAD_FILE) String file) {
+        this.service = Preconditions.checkNotNull(service, "Service");
+        this.scheduler = Preconditions.checkNotNull(scheduler, "Scheduler");
+        this.file = new File(Preconditions.checkNotNull(file, "File"));
+    }
+    
+    @Inject(optional = true)
+    void setInterval(@Named(CronConfig.RELOAD_INTERVAL) long interval) {
+        Preconditions.checkArgument(interval > 0, "Interval must be positive");
+        this.interval = interval;
+    }
+    
+    @Inject(optional = true)
+    void setIntervalUnit(@Named(CronConfig.RELOAD_INTERVAL_UNIT) TimeUnit intervalUnit) {
+        this.intervalUnit = Preconditions.checkNotNull(intervalUnit, "IntervalUnit");
+    }
+    
+    @Override
+    public void initialize() throws LifecycleException {
+        LOG.info("Watching {} for cron expression changes", file);
+        future = scheduler.scheduleWithFixedDelay(this, 0, interval, intervalUnit);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            check();
+            /* CHECKSTYLE:OFF */
+        } catch (RuntimeException e) {
+            /* CHECKSTYLE:ON */
+            // an escaping exception would cancel the polling for good
+            LOG.error("Unable to check " + file + " for changes", e);
+        }
+    }
+    
+    private void check() {
+        final long modified = file.lastModified();
+        if (modified == lastModified) {
+            return;
+        } else if (modified == 0L) {
+            LOG.warn("{} does not exist (anymore)", file);
+            lastModified = modified;
+            return;
+        }
+        
+        final Properties properties = new Properties();
+        InputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            properties.load(stream);
+        } catch (IOException e) {
+            LOG.error("Unable to read " + file, e);
+            return;
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+        
+        final Map<String, String> expressions = Maps.newHashMap();
+        for (String name : properties.stringPropertyNames()) {
+            expressions.put(name, properties.getProperty(name).trim());
+        }
+        
+        try {
+            service.reload(expressions);
+        } catch (IllegalArgumentException e) {
+            LOG.error("Ignoring invalid changes in " + file, e);
+            return;
+        }
+        
+        // only remember successful reloads, failed ones are retried on the next check
+        lastModified = modified;
+    }
+    
+    @Override
+    public void dispose() throws LifecycleException {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+}
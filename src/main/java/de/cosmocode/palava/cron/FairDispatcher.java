@@ -0,0 +1,284 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Dispatches runs of different tenants fairly using deficit round robin. Every tenant
+ * has its own queue and at most {@code concurrency} runs are handed over to executors
+ * at the same time, so a burst of one tenant waits in its own queue instead of in front
+ * of all other tenants in the executor's queue. Each visit of the round robin allows a tenant
+ * to dispatch as many runs as its weight, which costs O(1) per dispatch. The concurrency
+ * may be changed at any time, e.g. to follow the size of the {@link WorkerPool}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class FairDispatcher {
+    
+    private final Clock clock;
+    
+    private int concurrency;
+    
+    private final Map<String, Integer> weights;
+    
+    private final Map<String, Tenant> tenants = Maps.newHashMap();
+    
+    /**
+     * The round robin of all tenants with queued runs.
+     */
+    private final Queue<Tenant> ring = new ArrayDeque<Tenant>();
+    
+    private int active;
+    
+    private int queued;
+    
+    public FairDispatcher(Clock clock, int concurrency, Map<String, Integer> weights) {
+        this.clock = Preconditions.checkNotNull(clock, "Clock");
+        Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive");
+        this.concurrency = concurrency;
+        this.weights = ImmutableMap.copyOf(weights);
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            Preconditions.checkArgument(entry.getValue().intValue() > 0, 
+                "Weight of %s must be positive", entry.getKey());
+        }
+    }
+    
+    /**
+     * Submits the given task on behalf of the specified tenant.
+     *
+     * @param tenant the tenant
+     * @param task the task to perform
+     * @param executor the executor which performs the task
+     * @param scheduledAt the time the task was due, used to compute the tenant's lateness
+     */
+    public void submit(String tenant, Bulkhead.Task task, Executor executor, long scheduledAt) {
+        synchronized (this) {
+            Tenant queue = tenants.get(tenant);
+            if (queue == null) {
+                final Integer weight = weights.get(tenant);
+                queue = new Tenant(tenant, weight == null ? 1 : weight.intValue());
+                tenants.put(tenant, queue);
+            }
+            queue.entries.add(new Entry(queue, task, executor, scheduledAt, clock.currentTimeMillis()));
+            queued++;
+            if (queue.entries.size() == 1) {
+                ring.add(queue);
+            }
+        }
+        drain();
+    }
+    
+    /**
+     * Selects the next entry using deficit round robin. Every run costs one unit
+     * of credit, a tenant moves to the end of the ring when its credit is used up.
+     */
+    private Entry next() {
+        assert Thread.holdsLock(this) : "Expected monitor to be held";
+        final Tenant tenant = ring.peek();
+        if (tenant.credit == 0) {
+            tenant.credit = tenant.weight;
+        }
+        final Entry entry = tenant.entries.poll();
+        queued--;
+        tenant.credit--;
+        if (tenant.entries.isEmpty()) {
+            // idle tenants must not save up credit
+            ring.poll();
+            tenant.credit = 0;
+        } else if (tenant.credit == 0) {
+            ring.add(ring.poll());
+        }
+        return entry;
+    }
+    
+    /**
+     * Hands queued entries over to their executors as long as the concurrency allows.
+     */
+    private void drain() {
+        while (true) {
+            final Entry entry;
+            synchronized (this) {
+                if (active >= concurrency || ring.isEmpty()) {
+                    return;
+                }
+                entry = next();
+                active++;
+            }
+            entry.tenant.dispatched.incrementAndGet();
+            entry.tenant.lateness.record(Math.max(0L, clock.currentTimeMillis() - entry.scheduledAt));
+            try {
+                entry.executor.execute(entry);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    active--;
+                }
+                entry.task.rejected();
+            }
+        }
+    }
+    
+    private void release() {
+        synchronized (this) {
+            active--;
+        }
+        drain();
+    }
+    
+    /**
+     * Changes the maximum number of runs handed over at the same time. Raising
+     * the concurrency immediately dispatches queued runs, lowering it lets active
+     * runs finish.
+     *
+     * @param concurrency the new concurrency
+     * @throws IllegalArgumentException if concurrency is not positive
+     */
+    public void setConcurrency(int concurrency) {
+        Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive");
+        synchronized (this) {
+            this.concurrency = concurrency;
+        }
+        drain();
+    }
+    
+    /**
+     * Provides the number of runs waiting in the queues of all tenants.
+     *
+     * @return the number of queued runs
+     */
+    public synchronized int getQueued() {
+        return queued;
+    }
+    
+    /**
+     * Provides the time the longest waiting run has been queued, which costs
+     * one step per tenant with queued runs.
+     *
+     * @return the wait in milliseconds or 0 if no run is queued
+     */
+    public synchronized long getOldestWait() {
+        final long now = clock.currentTimeMillis();
+        long oldest = 0L;
+        for (Tenant tenant : ring) {
+            oldest = Math.max(oldest, now - tenant.entries.peek().queuedAt);
+        }
+        return oldest;
+    }
+    
+    /**
+     * Provides snapshots of all tenants which submitted at least one run.
+     *
+     * @return a list of tenant snapshots
+     */
+    public synchronized List<TenantInfo> getTenants() {
+        final List<TenantInfo> infos = Lists.newArrayListWithCapacity(tenants.size());
+        for (Tenant tenant : tenants.values()) {
+            infos.add(new TenantInfo(tenant.name, tenant.weight, tenant.entries.size(), 
+                tenant.dispatched.get(), tenant.lateness));
+        }
+        return infos;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "FairDispatcher [active=" + active + "/" + concurrency + ", tenants=" + tenants.size() + 
+            ", waiting=" + ring.size() + "]";
+    }
+    
+    /**
+     * The queue and statistics of a single tenant. Guarded by the dispatcher's monitor,
+     * except for the statistics.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class Tenant {
+        
+        private final String name;
+        
+        private final int weight;
+        
+        private final Queue<Entry> entries = new ArrayDeque<Entry>();
+        
+        private int credit;
+        
+        private final AtomicLong dispatched = new AtomicLong();
+        
+        private final DurationSampler lateness = new DurationSampler();
+        
+        public Tenant(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    
+    }
+    
+    /**
+     * A queued task with its executor, which releases its slot after the task completed.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private final class Entry implements Runnable {
+        
+        private final Tenant tenant;
+        
+        private final Bulkhead.Task task;
+        
+        private final Executor executor;
+        
+        private final long scheduledAt;
+        
+        private final long queuedAt;
+        
+        public Entry(Tenant tenant, Bulkhead.Task task, Executor executor, long scheduledAt, long queuedAt) {
+            this.tenant = tenant;
+            this.task = task;
+            this.executor = executor;
+            this.scheduledAt = scheduledAt;
+            this.queuedAt = queuedAt;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                release();
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    
+    }
+
+}
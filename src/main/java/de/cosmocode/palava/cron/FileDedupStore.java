@@ -0,0 +1,189 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.Initializable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A {@link DedupStore} which survives restarts. Tokens are kept in a bounded
+ * {@link MemoryDedupStore} and appended to a binary log file, which is read on
+ * startup and compacted once it holds twice as many records as the capacity allows.
+ * Records are flushed, but not synced, hence the store survives process crashes
+ * but not necessarily operating system crashes.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class FileDedupStore implements DedupStore, Initializable, Disposable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(FileDedupStore.class);
+    
+    private static final int MAGIC = 0x44445550;
+    
+    private static final int DEFAULT_CAPACITY = 10000;
+    
+    private final File file;
+    
+    private final MemoryDedupStore memory = new MemoryDedupStore();
+    
+    private int capacity = DEFAULT_CAPACITY;
+    
+    private DataOutputStream log;
+    
+    private int records;
+    
+    @Inject
+    public FileDedupStore(@Named(CronConfig.DEDUP_FILE) String file) {
+        this.file = new File(Preconditions.checkNotNull(file, "File"));
+    }
+    
+    @Inject(optional = true)
+    public synchronized void setCapacity(@Named(CronConfig.DEDUP_CAPACITY) int capacity) {
+        memory.setCapacity(capacity);
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public synchronized void initialize() throws LifecycleException {
+        try {
+            if (file.exists()) {
+                load();
+            }
+            compact();
+        } catch (IOException e) {
+            throw new LifecycleException(e);
+        }
+    }
+    
+    private void load() throws IOException {
+        final DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        int count = 0;
+        try {
+            if (stream.readInt() != MAGIC) {
+                throw new IOException(file + " is no dedup log");
+            }
+            while (true) {
+                final String job = stream.readUTF();
+                final long fireTime = stream.readLong();
+                memory.complete(FiringToken.of(job, fireTime));
+                count++;
+            }
+        } catch (EOFException e) {
+            // end of log, possibly truncated by a crash during the last append
+            LOG.info("Loaded {} completed firings from {}", count, file);
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+    }
+    
+    /**
+     * Rewrites the log using the tokens currently held in memory and reopens it for appending.
+     */
+    private void compact() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        final File temporary = new File(file.getPath() + ".tmp");
+        final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(temporary)));
+        records = 0;
+        try {
+            stream.writeInt(MAGIC);
+            for (FiringToken token : memory.getTokens()) {
+                write(stream, token);
+                records++;
+            }
+        } finally {
+            stream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            // some platforms refuse to rename onto an existing file
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Unable to replace " + file + " with " + temporary);
+            }
+        }
+        log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+    
+    private void write(DataOutputStream stream, FiringToken token) throws IOException {
+        stream.writeUTF(token.getJob());
+        stream.writeLong(token.getFireTime());
+    }
+    
+    @Override
+    public boolean isCompleted(FiringToken token) {
+        return memory.isCompleted(token);
+    }
+    
+    @Override
+    public synchronized boolean complete(FiringToken token) {
+        if (!memory.complete(token)) {
+            return false;
+        }
+        Preconditions.checkState(log != null, "%s has not been initialized", this);
+        try {
+            write(log, token);
+            log.flush();
+            if (++records > 2 * capacity) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to record " + token + " in " + file + ", keeping it in memory only", e);
+        }
+        return true;
+    }
+    
+    @Override
+    public synchronized void dispose() throws LifecycleException {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                throw new LifecycleException(e);
+            } finally {
+                log = null;
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "FileDedupStore [file=" + file + ", memory=" + memory + "]";
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Deterministic identity of a single firing, derived from the job and the scheduled
+ * fire time of the run. A slot which runs twice, e.g. after a failover or a retry, carries the
+ * same token twice, which allows jobs and listeners to guarantee exactly-once side effects
+ * using a {@link DedupStore}.
+ *
+ * <p>
+ *   The job is identified by its name if it has one, because ids are not stable across restarts.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class FiringToken {
+    
+    private static final ThreadLocal<FiringToken> CURRENT = new ThreadLocal<FiringToken>();
+    
+    private final String job;
+    
+    private final long fireTime;
+    
+    private FiringToken(String job, long fireTime) {
+        this.job = Preconditions.checkNotNull(job, "Job");
+        this.fireTime = fireTime;
+    }
+    
+    /**
+     * Creates a token for the given job and fire time.
+     * 
+     * @since 1.3
+     * @param job the name or id of the job
+     * @param fireTime the scheduled fire time in milliseconds since the epoch
+     * @return a new token
+     * @throws NullPointerException if job is null
+     */
+    public static FiringToken of(String job, long fireTime) {
+        return new FiringToken(job, fireTime);
+    }
+    
+    /**
+     * Parses the given string representation, as produced by {@link #toString()}.
+     * 
+     * @since 1.3
+     * @param token the string representation
+     * @return the parsed token
+     * @throws NullPointerException if token is null
+     * @throws IllegalArgumentException if token is malformed
+     */
+    public static FiringToken parse(String token) {
+        Preconditions.checkNotNull(token, "Token");
+        final int index = token.lastIndexOf('@');
+        Preconditions.checkArgument(index > 0, "Malformed token '%s'", token);
+        try {
+            return new FiringToken(token.substring(0, index), Long.parseLong(token.substring(index + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    /**
+     * Provides the token of the run performed by the calling thread.
+     * 
+     * @since 1.3
+     * @return the token or null if the calling thread does not perform a scheduled run
+     */
+    public static FiringToken current() {
+        return CURRENT.get();
+    }
+    
+    static void enter(FiringToken token) {
+        CURRENT.set(token);
+    }
+    
+    static void exit() {
+        CURRENT.remove();
+    }
+    
+    /**
+     * Provides the job.
+     * 
+     * @since 1.3
+     * @return the name or id of the job
+     */
+    public String getJob() {
+        return job;
+    }
+    
+    /**
+     * Provides the scheduled fire time.
+     * 
+     * @since 1.3
+     * @return the fire time in milliseconds since the epoch
+     */
+    public long getFireTime() {
+        return fireTime;
+    }
+    
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        } else if (that instanceof FiringToken) {
+            final FiringToken other = FiringToken.class.cast(that);
+            return fireTime == other.fireTime && job.equals(other.job);
+        } else {
+            return false;
+        }
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * job.hashCode() + (int) (fireTime ^ (fireTime >>> 32));
+    }
+    
+    @Override
+    public String toString() {
+        return job + "@" + fireTime;
+    }
+
+}
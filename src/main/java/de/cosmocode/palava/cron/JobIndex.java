@@ -0,0 +1,142 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.inject.internal.Sets;
+
+/**
+ * Index of job ids by name, group and tag. Lookups cost O(size of the result)
+ * instead of a scan over all scheduled jobs.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class JobIndex {
+    
+    private final Map<String, Set<String>> names = Maps.newHashMap();
+    
+    private final Map<String, Set<String>> groups = Maps.newHashMap();
+    
+    private final Map<String, Set<String>> tags = Maps.newHashMap();
+    
+    /**
+     * Adds the job with the given id using the name, group and tags of the specified options.
+     *
+     * @param id the job id
+     * @param options the options of the job
+     * @throws NullPointerException if id or options is null
+     */
+    public synchronized void add(String id, TriggerOptions options) {
+        Preconditions.checkNotNull(id, "Id");
+        Preconditions.checkNotNull(options, "Options");
+        if (options.getName() != null) {
+            add(names, options.getName(), id);
+        }
+        if (options.getGroup() != null) {
+            add(groups, options.getGroup(), id);
+        }
+        for (String tag : options.getTags()) {
+            add(tags, tag, id);
+        }
+    }
+    
+    private void add(Map<String, Set<String>> map, String key, String id) {
+        Set<String> ids = map.get(key);
+        if (ids == null) {
+            ids = Sets.newHashSet();
+            map.put(key, ids);
+        }
+        ids.add(id);
+    }
+    
+    /**
+     * Removes the job with the given id using the name, group and tags of the specified options.
+     *
+     * @param id the job id
+     * @param options the options of the job
+     * @throws NullPointerException if id or options is null
+     */
+    public synchronized void remove(String id, TriggerOptions options) {
+        Preconditions.checkNotNull(id, "Id");
+        Preconditions.checkNotNull(options, "Options");
+        if (options.getName() != null) {
+            remove(names, options.getName(), id);
+        }
+        if (options.getGroup() != null) {
+            remove(groups, options.getGroup(), id);
+        }
+        for (String tag : options.getTags()) {
+            remove(tags, tag, id);
+        }
+    }
+    
+    private void remove(Map<String, Set<String>> map, String key, String id) {
+        final Set<String> ids = map.get(key);
+        if (ids == null) {
+            return;
+        }
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            map.remove(key);
+        }
+    }
+    
+    /**
+     * Provides the ids of all jobs with the given name.
+     *
+     * @param name the name
+     * @return an immutable snapshot of all job ids with name
+     */
+    public synchronized Set<String> getNamed(String name) {
+        return snapshot(names.get(name));
+    }
+    
+    /**
+     * Provides the ids of all jobs in the given group.
+     *
+     * @param group the group
+     * @return an immutable snapshot of all job ids in group
+     */
+    public synchronized Set<String> getGroup(String group) {
+        return snapshot(groups.get(group));
+    }
+    
+    /**
+     * Provides the ids of all jobs tagged with the given tag.
+     *
+     * @param tag the tag
+     * @return an immutable snapshot of all job ids tagged with tag
+     */
+    public synchronized Set<String> getTagged(String tag) {
+        return snapshot(tags.get(tag));
+    }
+    
+    private Set<String> snapshot(Set<String> ids) {
+        if (ids == null) {
+            return ImmutableSet.of();
+        } else {
+            return ImmutableSet.copyOf(ids);
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a single scheduled job, as provided by
+ * {@link CronService#getJobs()}. Snapshots are taken without locking,
+ * hence values of a running job may be slightly inconsistent to each other.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class JobInfo {
+    
+    /**
+     * The state of a job.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    public static enum State {
+        
+        SCHEDULED,
+        
+        RUNNING,
+        
+        PAUSED;
+    
+    }
+    
+    private final String id;
+    
+    private final TriggerOptions options;
+    
+    private final String trigger;
+    
+    private final State state;
+    
+    private final long nextFireTime;
+    
+    private final long lastStartTime;
+    
+    private final long lastFinishTime;
+    
+    private final long runs;
+    
+    private final long failures;
+    
+    private final long overruns;
+    
+    private final long misfires;
+    
+    private final double meanDuration;
+    
+    private final long p99Duration;
+    
+    private final double meanJitter;
+    
+    private final long p99Jitter;
+    
+    JobInfo(String id, TriggerOptions options, String trigger, State state, long nextFireTime, 
+        long lastStartTime, long lastFinishTime, long runs, long failures, long overruns, long misfires,
+        DurationSampler durations, DurationSampler jitters) {
+        this.id = id;
+        this.options = options;
+        this.trigger = trigger;
+        this.state = state;
+        this.nextFireTime = nextFireTime;
+        this.lastStartTime = lastStartTime;
+        this.lastFinishTime = lastFinishTime;
+        this.runs = runs;
+        this.failures = failures;
+        this.overruns = overruns;
+        this.misfires = misfires;
+        this.meanDuration = durations.getMean();
+        this.p99Duration = durations.getPercentile(99);
+        this.meanJitter = jitters.getMean();
+        this.p99Jitter = jitters.getPercentile(99);
+    }
+    
+    /**
+     * Provides the job id.
+     *
+     * @since 1.3
+     * @return the id
+     */
+    public String getId() {
+        return id;
+    }
+    
+    /**
+     * Provides the tenant of the job.
+     *
+     * @since 1.3
+     * @return the tenant or null if the job has no tenant
+     */
+    public String getTenant() {
+        return options.getTenant();
+    }
+    
+    /**
+     * Provides the job name.
+     *
+     * @since 1.3
+     * @return the name or null if the job has no name
+     */
+    public String getName() {
+        return options.getName();
+    }
+    
+    /**
+     * Provides the job group.
+     *
+     * @since 1.3
+     * @return the group or null if the job has no group
+     */
+    public String getGroup() {
+        return options.getGroup();
+    }
+    
+    /**
+     * Provides the job tags.
+     *
+     * @since 1.3
+     * @return an immutable set of tags
+     */
+    public Set<String> getTags() {
+        return options.getTags();
+    }
+    
+    /**
+     * Provides a human readable description of the trigger.
+     *
+     * @since 1.3
+     * @return the trigger description
+     */
+    public String getTrigger() {
+        return trigger;
+    }
+    
+    /**
+     * Provides the state.
+     *
+     * @since 1.3
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+    
+    /**
+     * Provides the time of the next run.
+     *
+     * @since 1.3
+     * @return the next fire time in milliseconds since the epoch or -1 if
+     *         the job is currently running or paused
+     */
+    public long getNextFireTime() {
+        return nextFireTime;
+    }
+    
+    /**
+     * Provides the start time of the last run.
+     *
+     * @since 1.3
+     * @return the start time in milliseconds since the epoch or 0 if the job never ran
+     */
+    public long getLastStartTime() {
+        return lastStartTime;
+    }
+    
+    /**
+     * Provides the finish time of the last run.
+     *
+     * @since 1.3
+     * @return the finish time in milliseconds since the epoch or 0 if the job never finished
+     */
+    public long getLastFinishTime() {
+        return lastFinishTime;
+    }
+    
+    /**
+     * Provides the number of runs.
+     *
+     * @since 1.3
+     * @return the number of started runs
+     */
+    public long getRuns() {
+        return runs;
+    }
+    
+    /**
+     * Provides the number of failed runs.
+     *
+     * @since 1.3
+     * @return the number of runs which threw an exception
+     */
+    public long getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Provides the number of runs which exceeded their execution timeout.
+     *
+     * @since 1.3
+     * @return the number of overruns
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+    
+    /**
+     * Provides the number of overdue, coalesced and skipped runs.
+     *
+     * @since 1.3
+     * @return the number of misfires
+     */
+    public long getMisfires() {
+        return misfires;
+    }
+    
+    /**
+     * Provides the mean duration of all runs.
+     *
+     * @since 1.3
+     * @return the mean duration in milliseconds
+     */
+    public double getMeanDuration() {
+        return meanDuration;
+    }
+    
+    /**
+     * Provides the 99th percentile duration of the most recent runs.
+     *
+     * @since 1.3
+     * @return the 99th percentile duration in milliseconds
+     */
+    public long getP99Duration() {
+        return p99Duration;
+    }
+    
+    /**
+     * Provides the mean deviation of all firings from their scheduled time.
+     *
+     * @since 1.3
+     * @return the mean absolute jitter in microseconds
+     */
+    public double getMeanJitter() {
+        return meanJitter;
+    }
+    
+    /**
+     * Provides the 99th percentile deviation of the most recent firings from their scheduled time.
+     *
+     * @since 1.3
+     * @return the 99th percentile absolute jitter in microseconds
+     */
+    public long getP99Jitter() {
+        return p99Jitter;
+    }
+    
+    @Override
+    public String toString() {
+        return "JobInfo [id=" + id + ", name=" + getName() + ", trigger=" + trigger + ", state=" + state + 
+            ", nextFireTime=" + nextFireTime + ", runs=" + runs + ", failures=" + failures + "]";
+    }
+
+}
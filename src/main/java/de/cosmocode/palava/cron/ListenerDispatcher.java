@@ -0,0 +1,147 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Dispatches {@link CronEvent}s to {@link CronListener}s on a single daemon thread
+ * using a bounded queue. Publishing never blocks, events are dropped and counted
+ * if the queue is full. Events published after {@link #shutdown()} are dropped silently.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class ListenerDispatcher implements CronEventSink {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(ListenerDispatcher.class);
+    
+    private final Set<CronListener> listeners;
+    
+    private final ThreadPoolExecutor executor;
+    
+    private final AtomicLong dropped = new AtomicLong();
+    
+    public ListenerDispatcher(Set<CronListener> listeners, int capacity) {
+        Preconditions.checkNotNull(listeners, "Listeners");
+        Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+        this.listeners = ImmutableSet.copyOf(listeners);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+                
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "cron-listeners");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            
+            });
+    }
+    
+    @Override
+    public void publish(final CronEvent event) {
+        if (event.getType() == CronEvent.Type.SCHEDULED) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    dispatch(event);
+                }
+            
+            });
+        } catch (RejectedExecutionException e) {
+            if (executor.isShutdown()) {
+                LOG.debug("Listeners have been shut down, dropping {}", event);
+                return;
+            }
+            final long count = dropped.incrementAndGet();
+            // log on powers of two only, a saturated queue would flood the log otherwise
+            if ((count & (count - 1)) == 0) {
+                LOG.warn("Listener queue is full, dropped {} events so far", count);
+            }
+        }
+    }
+    
+    private void dispatch(CronEvent event) {
+        for (CronListener listener : listeners) {
+            try {
+                switch (event.getType()) {
+                    case FIRED: {
+                        listener.beforeFire(event);
+                        break;
+                    }
+                    case FINISHED: {
+                        listener.afterSuccess(event);
+                        break;
+                    }
+                    case FAILED: {
+                        listener.afterFailure(event);
+                        break;
+                    }
+                    case MISFIRED: {
+                        listener.misfired(event);
+                        break;
+                    }
+                    case RESCHEDULED: {
+                        listener.rescheduled(event);
+                        break;
+                    }
+                    default: {
+                        break;
+                    }
+                }
+                /* CHECKSTYLE:OFF */
+            } catch (RuntimeException e) {
+                /* CHECKSTYLE:ON */
+                LOG.warn("Listener " + listener + " failed on " + event, e);
+            }
+        }
+    }
+    
+    /**
+     * Provides the number of events dropped due to a full queue.
+     *
+     * @return the number of dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    /**
+     * Stops accepting events. Queued events are still delivered.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.quartz.CronExpression;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Forecast of the load caused by a set of {@link TriggerBinding}s as a histogram of
+ * firings per minute of the day. Cron expressions are analyzed using {@link ExpressionAnalysis},
+ * fixed rate and fixed delay triggers add their maximum number of firings to every minute.
+ * The forecast assumes that all cron expressions fire on the same day, which makes
+ * it an upper bound of the actual load.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class LoadForecast {
+    
+    private static final long MILLIS_PER_MINUTE = 60L * 1000L;
+    
+    private final int[] firings = new int[ExpressionAnalysis.MINUTES_PER_DAY];
+    
+    private int unknown;
+    
+    private LoadForecast() {
+    
+    }
+    
+    /**
+     * Computes the forecast of the given bindings.
+     * 
+     * @since 1.3
+     * @param bindings the bindings
+     * @return the forecast of bindings
+     * @throws NullPointerException if bindings is null
+     */
+    public static LoadForecast of(Iterable<? extends TriggerBinding> bindings) {
+        Preconditions.checkNotNull(bindings, "Bindings");
+        final List<Trigger> triggers = Lists.newArrayList();
+        for (TriggerBinding binding : bindings) {
+            triggers.add(TriggerBindings.configured(binding).getTrigger());
+        }
+        return ofTriggers(triggers);
+    }
+    
+    /**
+     * Computes the forecast of the given triggers.
+     * 
+     * @param triggers the triggers
+     * @return the forecast of triggers
+     */
+    static LoadForecast ofTriggers(Iterable<? extends Trigger> triggers) {
+        final LoadForecast forecast = new LoadForecast();
+        // many bindings share an expression, analyze each one only once
+        final Map<String, ExpressionAnalysis> analyses = Maps.newHashMap();
+        int baseline = 0;
+        for (Trigger trigger : triggers) {
+            final CronExpression expression = Triggers.getExpression(trigger);
+            final long period = Triggers.getPeriod(trigger);
+            if (expression != null) {
+                ExpressionAnalysis analysis = analyses.get(expression.getCronExpression());
+                if (analysis == null) {
+                    analysis = ExpressionAnalysis.of(expression);
+                    analyses.put(expression.getCronExpression(), analysis);
+                }
+                forecast.add(analysis);
+            } else if (period > 0) {
+                baseline += (int) Math.min(Integer.MAX_VALUE, (MILLIS_PER_MINUTE + period - 1) / period);
+            } else {
+                forecast.unknown++;
+            }
+        }
+        if (baseline > 0) {
+            for (int minute = 0; minute < forecast.firings.length; minute++) {
+                forecast.firings[minute] += baseline;
+            }
+        }
+        return forecast;
+    }
+    
+    private void add(ExpressionAnalysis analysis) {
+        final int perMinute = analysis.getFiringsPerMinute();
+        final BitSet minutes = analysis.getMinutes();
+        for (int minute = minutes.nextSetBit(0); minute >= 0; minute = minutes.nextSetBit(minute + 1)) {
+            firings[minute] += perMinute;
+        }
+    }
+    
+    /**
+     * Provides the forecasted number of firings during the given minute.
+     * 
+     * @since 1.3
+     * @param minuteOfDay the minute of the day, starting at 0 for midnight
+     * @return the number of firings
+     * @throws IllegalArgumentException if minuteOfDay is out of range
+     */
+    public int getFirings(int minuteOfDay) {
+        Preconditions.checkArgument(minuteOfDay >= 0 && minuteOfDay < firings.length,
+            "Minute %s is out of range", minuteOfDay);
+        return firings[minuteOfDay];
+    }
+    
+    /**
+     * Provides the first minute with the highest number of firings.
+     * 
+     * @since 1.3
+     * @return the peak minute of the day
+     */
+    public int getPeakMinute() {
+        int peak = 0;
+        for (int minute = 1; minute < firings.length; minute++) {
+            if (firings[minute] > firings[peak]) {
+                peak = minute;
+            }
+        }
+        return peak;
+    }
+    
+    /**
+     * Provides the highest number of firings during a single minute.
+     * 
+     * @since 1.3
+     * @return the peak number of firings per minute
+     */
+    public int getPeak() {
+        return firings[getPeakMinute()];
+    }
+    
+    /**
+     * Provides all minutes with more firings than the given threshold.
+     * 
+     * @since 1.3
+     * @param threshold the maximum number of firings per minute
+     * @return an immutable list of all minutes of the day exceeding threshold, in order
+     */
+    public List<Integer> getHotMinutes(int threshold) {
+        final List<Integer> hot = Lists.newArrayList();
+        for (int minute = 0; minute < firings.length; minute++) {
+            if (firings[minute] > threshold) {
+                hot.add(minute);
+            }
+        }
+        return ImmutableList.copyOf(hot);
+    }
+    
+    /**
+     * Provides the number of bindings whose triggers could not be analyzed.
+     * 
+     * @since 1.3
+     * @return the number of custom triggers
+     */
+    public int getUnknown() {
+        return unknown;
+    }
+    
+    @Override
+    public String toString() {
+        final int peak = getPeakMinute();
+        return String.format("LoadForecast [peak=%d at %02d:%02d, unknown=%d]", 
+            firings[peak], peak / 60, peak % 60, unknown);
+    }
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * A {@link CronEventSink} which logs events using SLF4J. Supports sampling
+ * (only every n-th run of each job is logged), rate limiting (at most n events
+ * per second, excess events are dropped and summarized) and a configurable level.
+ * Failures are never sampled.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class LoggingEventSink implements CronEventSink {
+    
+    /**
+     * The log level used by a {@link LoggingEventSink}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    public static enum Level {
+        
+        TRACE, DEBUG, INFO, WARN, ERROR;
+    
+    }
+    
+    private final Logger log;
+    
+    private Level level = Level.DEBUG;
+    
+    private long sampleRate = 1;
+    
+    private long rateLimit;
+    
+    private final AtomicLong window = new AtomicLong();
+    
+    private final AtomicLong count = new AtomicLong();
+    
+    private final AtomicLong dropped = new AtomicLong();
+    
+    private Clock clock = Clock.SYSTEM;
+    
+    @Inject
+    public LoggingEventSink() {
+        this(LoggerFactory.getLogger(LoggingEventSink.class));
+    }
+    
+    LoggingEventSink(Logger log) {
+        this.log = Preconditions.checkNotNull(log, "Log");
+    }
+    
+    @Inject(optional = true)
+    void setClock(@Cron Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock, "Clock");
+    }
+    
+    @Inject(optional = true)
+    void setLevel(@Named(CronConfig.EVENTS_LEVEL) Level level) {
+        this.level = Preconditions.checkNotNull(level, "Level");
+    }
+    
+    @Inject(optional = true)
+    void setSampleRate(@Named(CronConfig.EVENTS_SAMPLE_RATE) long sampleRate) {
+        Preconditions.checkArgument(sampleRate > 0, "SampleRate must be positive");
+        this.sampleRate = sampleRate;
+    }
+    
+    @Inject(optional = true)
+    void setRateLimit(@Named(CronConfig.EVENTS_RATE_LIMIT) long rateLimit) {
+        Preconditions.checkArgument(rateLimit >= 0, "RateLimit must not be negative");
+        this.rateLimit = rateLimit;
+    }
+    
+    @Override
+    public void publish(CronEvent event) {
+        if (!isEnabled()) {
+            return;
+        } else if (event.getType() != CronEvent.Type.FAILED && event.getRun() % sampleRate != 0) {
+            return;
+        } else if (!acquire()) {
+            return;
+        }
+        
+        // the level has been checked already, formatting eagerly allows to pass the throwable on its own
+        final String message = "cron event=" + event.getType() + " job=" + event.getJobId() +
+            " name=" + event.getJobName() + " run=" + event.getRun() + " value=" + event.getValue();
+        final Throwable throwable = event.getThrowable();
+        
+        switch (level) {
+            case TRACE: {
+                if (throwable == null) {
+                    log.trace(message);
+                } else {
+                    log.trace(message, throwable);
+                }
+                break;
+            }
+            case DEBUG: {
+                if (throwable == null) {
+                    log.debug(message);
+                } else {
+                    log.debug(message, throwable);
+                }
+                break;
+            }
+            case INFO: {
+                if (throwable == null) {
+                    log.info(message);
+                } else {
+                    log.info(message, throwable);
+                }
+                break;
+            }
+            case WARN: {
+                if (throwable == null) {
+                    log.warn(message);
+                } else {
+                    log.warn(message, throwable);
+                }
+                break;
+            }
+            case ERROR: {
+                if (throwable == null) {
+                    log.error(message);
+                } else {
+                    log.error(message, throwable);
+                }
+                break;
+            }
+            default: {
+                throw new AssertionError("Unknown level " + level);
+            }
+        }
+    }
+    
+    private boolean isEnabled() {
+        switch (level) {
+            case TRACE: {
+                return log.isTraceEnabled();
+            }
+            case DEBUG: {
+                return log.isDebugEnabled();
+            }
+            case INFO: {
+                return log.isInfoEnabled();
+            }
+            case WARN: {
+                return log.isWarnEnabled();
+            }
+            case ERROR: {
+                return log.isErrorEnabled();
+            }
+            default: {
+                throw new AssertionError("Unknown level " + level);
+            }
+        }
+    }
+    
+    /**
+     * Acquires a permit for a single event in the current one second window.
+     * 
+     * @return true if the event may be logged, false if it should be dropped
+     */
+    private boolean acquire() {
+        if (rateLimit == 0) {
+            return true;
+        }
+        
+        final long second = clock.currentTimeMillis() / 1000;
+        final long current = window.get();
+        if (current != second && window.compareAndSet(current, second)) {
+            count.set(0);
+            final long suppressed = dropped.getAndSet(0);
+            if (suppressed > 0) {
+                log.warn("Dropped {} cron events due to a rate limit of {}/s", suppressed, rateLimit);
+            }
+        }
+        
+        if (count.incrementAndGet() > rateLimit) {
+            dropped.incrementAndGet();
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+}
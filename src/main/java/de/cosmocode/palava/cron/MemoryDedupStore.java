@@ -0,0 +1,90 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * A {@link DedupStore} which keeps a bounded number of the most recently used tokens in memory.
+ * Tokens are evicted in least recently used order, the capacity therefore should cover all
+ * firings within the time frame in which a run may be repeated.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class MemoryDedupStore implements DedupStore {
+    
+    private static final int DEFAULT_CAPACITY = 10000;
+    
+    private int capacity = DEFAULT_CAPACITY;
+    
+    private final Map<FiringToken, Boolean> tokens = new LinkedHashMap<FiringToken, Boolean>(16, 0.75f, true) {
+        
+        private static final long serialVersionUID = 7410573307421839553L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FiringToken, Boolean> eldest) {
+            return size() > capacity;
+        }
+    
+    };
+    
+    @Inject
+    public MemoryDedupStore() {
+    
+    }
+    
+    @Inject(optional = true)
+    public synchronized void setCapacity(@Named(CronConfig.DEDUP_CAPACITY) int capacity) {
+        Preconditions.checkArgument(capacity > 0, "Capacity must be positive");
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public synchronized boolean isCompleted(FiringToken token) {
+        Preconditions.checkNotNull(token, "Token");
+        return tokens.get(token) != null;
+    }
+    
+    @Override
+    public synchronized boolean complete(FiringToken token) {
+        Preconditions.checkNotNull(token, "Token");
+        return tokens.put(token, Boolean.TRUE) == null;
+    }
+    
+    /**
+     * Provides all recorded tokens, from the least to the most recently used.
+     * 
+     * @return an immutable snapshot of all tokens
+     */
+    synchronized Collection<FiringToken> getTokens() {
+        return ImmutableList.copyOf(tokens.keySet());
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "MemoryDedupStore [size=" + tokens.size() + ", capacity=" + capacity + "]";
+    }
+
+}
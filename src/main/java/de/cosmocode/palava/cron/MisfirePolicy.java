@@ -0,0 +1,48 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Defines how a job catches up on runs which became overdue, e.g. due to
+ * long garbage collection pauses or a saturated {@link Cron} scheduler.
+ * A run is overdue if it starts later than the misfire threshold allows,
+ * see {@link TriggerOptions#withMisfireThreshold(long, java.util.concurrent.TimeUnit)}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public enum MisfirePolicy {
+    
+    /**
+     * Performs the overdue run once and drops all other missed runs.
+     * The next run is the first regular run which is not overdue.
+     */
+    COALESCE,
+    
+    /**
+     * Performs every missed run, one after another, separated by at least the replay
+     * interval, see {@link TriggerOptions#withReplayInterval(long, java.util.concurrent.TimeUnit)}.
+     */
+    REPLAY,
+    
+    /**
+     * Drops the overdue run and all other missed runs. The next run
+     * is the first regular run which is not overdue.
+     */
+    SKIP;
+
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Coordinates mutual exclusion groups. A {@link Lease} holds all of its groups at once
+ * or none of them. Groups are taken using compare and set in the order of their names
+ * and released immediately if one of them is held, hence acquiring never blocks and
+ * never deadlocks. A lease which can't be acquired waits in the queue of the group
+ * which blocked it and is started by the thread releasing that group.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class MutualExclusion {
+    
+    private final ConcurrentMap<String, Group> groups = Maps.newConcurrentMap();
+    
+    private final Clock clock;
+    
+    public MutualExclusion(Clock clock) {
+        this.clock = Preconditions.checkNotNull(clock, "Clock");
+    }
+    
+    /**
+     * Creates a lease on the given groups.
+     *
+     * @param names the group names
+     * @return a new lease
+     * @throws IllegalArgumentException if names is empty
+     * @throws NullPointerException if names is or contains null
+     */
+    public Lease lease(Set<String> names) {
+        Preconditions.checkNotNull(names, "Names");
+        Preconditions.checkArgument(!names.isEmpty(), "Names must not be empty");
+        final List<Group> members = Lists.newArrayListWithCapacity(names.size());
+        for (String name : new TreeSet<String>(names)) {
+            members.add(getGroup(name));
+        }
+        return new Lease(members);
+    }
+    
+    private Group getGroup(String name) {
+        final Group group = groups.get(name);
+        if (group == null) {
+            final Group created = new Group(name);
+            final Group previous = groups.putIfAbsent(name, created);
+            return previous == null ? created : previous;
+        } else {
+            return group;
+        }
+    }
+    
+    /**
+     * Tries to take all groups of the given lease. Groups taken before a held
+     * one are released again and added to the dirty groups.
+     * 
+     * @param lease the lease
+     * @param dirty groups which have to be drained
+     * @return null if all groups have been taken or the group which blocked the lease
+     */
+    private Group tryAcquire(Lease lease, Queue<Group> dirty) {
+        for (int i = 0; i < lease.members.size(); i++) {
+            final Group group = lease.members.get(i);
+            if (!group.held.compareAndSet(false, true)) {
+                for (int j = 0; j < i; j++) {
+                    final Group taken = lease.members.get(j);
+                    taken.held.set(false);
+                    dirty.add(taken);
+                }
+                return group;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Starts the given lease if all its groups are free or defers it otherwise.
+     * 
+     * @param lease a lease which is neither held nor queued
+     * @param dirty groups which have to be drained
+     */
+    private void place(Lease lease, Queue<Group> dirty) {
+        final Group blocked = tryAcquire(lease, dirty);
+        if (blocked == null) {
+            lease.started();
+        } else {
+            if (lease.deferredAt == -1L) {
+                lease.deferredAt = clock.currentTimeMillis();
+                blocked.deferred.incrementAndGet();
+            }
+            blocked.waiting.incrementAndGet();
+            blocked.queue.offer(lease);
+            // the holder may have released the group before the lease was queued
+            dirty.add(blocked);
+        }
+    }
+    
+    /**
+     * Places queued leases of the given group as long as the group is free.
+     * 
+     * @param group the group
+     * @param dirty groups which have to be drained
+     */
+    private void drain(Group group, Queue<Group> dirty) {
+        while (!group.held.get()) {
+            final Lease lease = group.queue.poll();
+            if (lease == null) {
+                return;
+            }
+            group.waiting.decrementAndGet();
+            place(lease, dirty);
+        }
+    }
+    
+    private void drainAll(Queue<Group> dirty) {
+        while (true) {
+            final Group group = dirty.poll();
+            if (group == null) {
+                return;
+            }
+            drain(group, dirty);
+        }
+    }
+    
+    /**
+     * Provides snapshots of all groups.
+     *
+     * @return a list of snapshots of all groups
+     */
+    public List<ExclusionGroupInfo> getGroups() {
+        final List<ExclusionGroupInfo> infos = Lists.newArrayListWithCapacity(groups.size());
+        for (Group group : groups.values()) {
+            infos.add(new ExclusionGroupInfo(group.name, group.held.get(), group.waiting.get(),
+                group.acquired.get(), group.deferred.get(), group.waits));
+        }
+        return infos;
+    }
+    
+    @Override
+    public String toString() {
+        return "MutualExclusion [groups=" + groups.keySet() + "]";
+    }
+    
+    /**
+     * A single mutual exclusion group.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class Group {
+        
+        private final String name;
+        
+        private final AtomicBoolean held = new AtomicBoolean();
+        
+        private final Queue<Lease> queue = new ConcurrentLinkedQueue<Lease>();
+        
+        private final AtomicInteger waiting = new AtomicInteger();
+        
+        private final AtomicLong acquired = new AtomicLong();
+        
+        private final AtomicLong deferred = new AtomicLong();
+        
+        private final DurationSampler waits = new DurationSampler();
+        
+        public Group(String name) {
+            this.name = name;
+        }
+    
+    }
+    
+    /**
+     * A claim on one or more groups, used for a single run.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    final class Lease {
+        
+        private final List<Group> members;
+        
+        private Runnable command;
+        
+        /**
+         * The time this lease has been deferred for the first time, -1 if it never has.
+         * Only accessed by the thread which currently places this lease.
+         */
+        private long deferredAt = -1L;
+        
+        private Lease(List<Group> members) {
+            this.members = members;
+        }
+        
+        /**
+         * Runs the given command as soon as all groups of this lease are free, possibly
+         * right away on the calling thread or later on the thread releasing the last
+         * conflicting lease. The command has to {@link #release()} this lease eventually.
+         *
+         * @param start the command to run once all groups are held
+         * @throws NullPointerException if start is null
+         * @throws IllegalStateException if this lease has already been acquired
+         */
+        public void acquire(Runnable start) {
+            Preconditions.checkNotNull(start, "Start");
+            Preconditions.checkState(command == null, "%s has already been acquired", this);
+            this.command = start;
+            final Queue<Group> dirty = new ArrayDeque<Group>();
+            place(this, dirty);
+            drainAll(dirty);
+        }
+        
+        /**
+         * Checks whether this lease had to wait for a conflicting lease. Only valid
+         * within the start command passed to {@link #acquire(Runnable)}.
+         * 
+         * @return true if this lease has been deferred, false if it started right away
+         */
+        public boolean isDeferred() {
+            return deferredAt != -1L;
+        }
+        
+        private void started() {
+            final long waited = deferredAt == -1L ? 0L : Math.max(0L, clock.currentTimeMillis() - deferredAt);
+            for (Group group : members) {
+                group.acquired.incrementAndGet();
+                group.waits.record(waited);
+            }
+            command.run();
+        }
+        
+        /**
+         * Releases all groups of this lease and starts waiting leases
+         * which are no longer blocked.
+         */
+        public void release() {
+            final Queue<Group> dirty = new ArrayDeque<Group>();
+            for (Group group : members) {
+                group.held.set(false);
+                dirty.add(group);
+            }
+            drainAll(dirty);
+        }
+        
+        @Override
+        public String toString() {
+            final List<String> names = Lists.newArrayListWithCapacity(members.size());
+            for (Group group : members) {
+                names.add(group.name);
+            }
+            return "Lease " + names;
+        }
+    
+    }
+
+}
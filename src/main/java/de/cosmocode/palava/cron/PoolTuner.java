@@ -0,0 +1,184 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.Initializable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * Periodically adapts the size of the {@link WorkerPool} to the current load, within
+ * {@code cron.workers.min} and {@code cron.workers.max}. The pool grows if runs wait
+ * longer than {@code cron.workers.waitThreshold} for a worker, including runs of tenants
+ * waiting for their {@link FairDispatcher}, and shrinks if at most
+ * half of the workers have been busy. Both decisions require several consecutive
+ * samples, growing reacts faster than shrinking and every decision starts over, which
+ * prevents the size from oscillating on short bursts.
+ *
+ * <p>
+ *   Decisions are logged and exposed using {@link EngineInfo#getPoolGrowths()},
+ *   {@link EngineInfo#getPoolShrinks()} and {@link EngineInfo#getPoolDecision()}.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class PoolTuner implements Initializable, Runnable, Disposable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(PoolTuner.class);
+    
+    /**
+     * Number of consecutive overloaded samples before the pool grows.
+     */
+    private static final int GROW_AFTER = 2;
+    
+    /**
+     * Number of consecutive underutilized samples before the pool shrinks.
+     */
+    private static final int SHRINK_AFTER = 5;
+    
+    private final WorkerPool pool;
+    
+    private final ScheduledExecutorService scheduler;
+    
+    private final int maximum;
+    
+    private int minimum = 1;
+    
+    private long interval = 10;
+    
+    private TimeUnit intervalUnit = TimeUnit.SECONDS;
+    
+    private long waitThreshold = 100;
+    
+    private TimeUnit waitThresholdUnit = TimeUnit.MILLISECONDS;
+    
+    private int overloaded;
+    
+    private int underutilized;
+    
+    private Future<?> future;
+    
+    @Inject
+    public PoolTuner(WorkerPool pool, @Cron ScheduledExecutorService scheduler,
+        @Named(CronConfig.WORKERS_MAX) int maximum) {
+        this.pool = Preconditions.checkNotNull(pool, "Pool");
+        this.scheduler = Preconditions.checkNotNull(scheduler, "Scheduler");
+        Preconditions.checkArgument(maximum > 0, "Maximum must be positive");
+        this.maximum = maximum;
+    }
+    
+    @Inject(optional = true)
+    void setMinimum(@Named(CronConfig.WORKERS_MIN) int minimum) {
+        Preconditions.checkArgument(minimum > 0, "Minimum must be positive");
+        this.minimum = minimum;
+    }
+    
+    @Inject(optional = true)
+    void setInterval(@Named(CronConfig.WORKERS_TUNING_INTERVAL) long interval) {
+        Preconditions.checkArgument(interval > 0, "Interval must be positive");
+        this.interval = interval;
+    }
+    
+    @Inject(optional = true)
+    void setIntervalUnit(@Named(CronConfig.WORKERS_TUNING_INTERVAL_UNIT) TimeUnit intervalUnit) {
+        this.intervalUnit = Preconditions.checkNotNull(intervalUnit, "IntervalUnit");
+    }
+    
+    @Inject(optional = true)
+    void setWaitThreshold(@Named(CronConfig.WORKERS_WAIT_THRESHOLD) long waitThreshold) {
+        Preconditions.checkArgument(waitThreshold >= 0, "WaitThreshold must not be negative");
+        this.waitThreshold = waitThreshold;
+    }
+    
+    @Inject(optional = true)
+    void setWaitThresholdUnit(@Named(CronConfig.WORKERS_WAIT_THRESHOLD_UNIT) TimeUnit waitThresholdUnit) {
+        this.waitThresholdUnit = Preconditions.checkNotNull(waitThresholdUnit, "WaitThresholdUnit");
+    }
+    
+    @Override
+    public void initialize() throws LifecycleException {
+        Preconditions.checkState(minimum <= maximum, "Minimum %s exceeds maximum %s", minimum, maximum);
+        final int size = pool.getCorePoolSize();
+        if (size < minimum || size > maximum) {
+            pool.resize(Math.max(minimum, Math.min(maximum, size)), "configured bounds");
+        }
+        LOG.info("Tuning {} between {} and {} workers every {} {}", new Object[] {
+            pool, minimum, maximum, interval, intervalUnit
+        });
+        pool.sample();
+        future = scheduler.scheduleWithFixedDelay(this, interval, interval, intervalUnit);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            tune();
+            /* CHECKSTYLE:OFF */
+        } catch (RuntimeException e) {
+            /* CHECKSTYLE:ON */
+            // an escaping exception would cancel the tuning for good
+            LOG.error("Unable to tune " + pool, e);
+        }
+    }
+    
+    private void tune() {
+        final WorkerPool.Load load = pool.sample();
+        LOG.trace("Sampled {}", load);
+        final int size = load.getSize();
+        final int demand = load.getDemand();
+        if (load.getQueued() > 0 && load.getWait() > waitThresholdUnit.toMillis(waitThreshold)) {
+            underutilized = 0;
+            if (++overloaded >= GROW_AFTER && size < maximum) {
+                // at most doubles per decision, the demand is a snapshot of a possibly short burst
+                final int target = Math.min(maximum, Math.max(size + 1, Math.min(2 * size, demand)));
+                pool.resize(target, load.getQueued() + " runs queued, waiting up to " + load.getWait() + " ms");
+                overloaded = 0;
+            }
+        } else if (load.getQueued() == 0 && Math.max(load.getPeakBusy(), load.getAverageBusy()) <= size / 2) {
+            overloaded = 0;
+            if (++underutilized >= SHRINK_AFTER && size > minimum) {
+                // gives back at most a quarter per decision
+                final int target = Math.max(minimum, Math.max(demand, size - Math.max(1, size / 4)));
+                pool.resize(target, "at most " + Math.max(load.getPeakBusy(), load.getAverageBusy()) + " busy");
+                underutilized = 0;
+            }
+        } else {
+            overloaded = 0;
+            underutilized = 0;
+        }
+    }
+    
+    @Override
+    public void dispose() throws LifecycleException {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A timer with sub-millisecond accuracy, running on a dedicated thread. Deadlines are
+ * kept in {@link System#nanoTime()}, which is calibrated against the wall clock at the
+ * edge of a millisecond tick. The timer thread parks until shortly before the next
+ * deadline and spins for the remaining time, which avoids the wakeup jitter of
+ * {@link LockSupport#parkNanos(long)} at the expense of some cpu time.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class PrecisionTimer implements Runnable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(PrecisionTimer.class);
+    
+    private static final long CALIBRATION_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    
+    private final PriorityQueue<Task> queue = new PriorityQueue<Task>();
+    
+    private final long spin;
+    
+    private final Thread thread;
+    
+    /**
+     * The nano time at which the wall clock equals {@link #baseMillis}.
+     */
+    private volatile long baseNanos;
+    
+    private volatile long baseMillis;
+    
+    private long calibrated;
+    
+    private long sequence;
+    
+    private boolean shutdown;
+    
+    /**
+     * Creates and starts a new timer.
+     * 
+     * @param spin the time before a deadline during which the timer spins instead of parking
+     * @param unit the unit of spin
+     */
+    public PrecisionTimer(long spin, TimeUnit unit) {
+        Preconditions.checkArgument(spin >= 0, "Spin must not be negative");
+        this.spin = unit.toNanos(spin);
+        calibrate();
+        this.thread = new Thread(this, "cron-precision-timer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+    
+    /**
+     * Aligns nano time to the wall clock by waiting for the next millisecond tick.
+     */
+    private void calibrate() {
+        final long start = System.currentTimeMillis();
+        long millis;
+        long nanos;
+        do {
+            nanos = System.nanoTime();
+            millis = System.currentTimeMillis();
+        } while (millis == start);
+        baseMillis = millis;
+        baseNanos = nanos;
+        calibrated = nanos;
+    }
+    
+    /**
+     * Converts the given wall clock time into a nano time deadline.
+     * 
+     * @param time the time in milliseconds since the epoch
+     * @return the corresponding value of {@link System#nanoTime()}
+     */
+    public long toNanos(long time) {
+        return baseNanos + TimeUnit.MILLISECONDS.toNanos(time - baseMillis);
+    }
+    
+    /**
+     * Schedules the given command to run at the given wall clock time.
+     * 
+     * @param command the command
+     * @param time the time in milliseconds since the epoch
+     * @return a future which can be used to cancel the run
+     * @throws IllegalStateException if this timer has been shut down
+     */
+    public Future<?> schedule(Runnable command, long time) {
+        Preconditions.checkNotNull(command, "Command");
+        final Task task = new Task(command, toNanos(time));
+        final boolean earliest;
+        synchronized (this) {
+            Preconditions.checkState(!shutdown, "%s has been shut down", this);
+            task.id = sequence++;
+            queue.add(task);
+            earliest = queue.peek() == task;
+        }
+        if (earliest) {
+            LockSupport.unpark(thread);
+        }
+        return task;
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            final Task task;
+            synchronized (this) {
+                if (shutdown) {
+                    return;
+                }
+                task = queue.peek();
+            }
+            if (task == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            final long remaining = task.deadline - System.nanoTime();
+            if (remaining > spin) {
+                // calibration takes up to a millisecond, which must not delay the next deadline
+                if (remaining > spin + TimeUnit.MILLISECONDS.toNanos(2) && 
+                    System.nanoTime() - calibrated > CALIBRATION_INTERVAL) {
+                    calibrate();
+                    continue;
+                }
+                LockSupport.parkNanos(this, remaining - spin);
+                // an earlier task may have been scheduled meanwhile
+                continue;
+            }
+            while (System.nanoTime() < task.deadline) {
+                // spinning, parking is too inaccurate this close to the deadline
+                continue;
+            }
+            synchronized (this) {
+                if (queue.peek() != task) {
+                    continue;
+                }
+                queue.poll();
+            }
+            task.run();
+        }
+    }
+    
+    /**
+     * Stops the timer thread. Pending tasks are discarded.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+            queue.clear();
+        }
+        LockSupport.unpark(thread);
+    }
+    
+    @Override
+    public String toString() {
+        return "PrecisionTimer [spin=" + spin + " ns]";
+    }
+    
+    /**
+     * A pending run ordered by its deadline and submission order.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private final class Task extends FutureTask<Object> implements Comparable<Task> {
+        
+        private final long deadline;
+        
+        private long id;
+        
+        public Task(Runnable command, long deadline) {
+            super(Executors.callable(command));
+            this.deadline = deadline;
+        }
+        
+        @Override
+        protected void setException(Throwable t) {
+            super.setException(t);
+            LOG.error("Uncaught exception in " + this, t);
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (PrecisionTimer.this) {
+                    queue.remove(this);
+                }
+            }
+            return cancelled;
+        }
+        
+        @Override
+        public int compareTo(Task that) {
+            if (that == this) {
+                return 0;
+            }
+            // nano times may overflow, hence compare differences
+            final long diff = deadline - that.deadline;
+            if (diff == 0) {
+                return id < that.id ? -1 : 1;
+            } else {
+                return diff < 0 ? -1 : 1;
+            }
+        }
+    
+    }
+
+}
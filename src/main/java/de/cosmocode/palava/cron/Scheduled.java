@@ -0,0 +1,89 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the annotated method. The {@link ScheduledProcessor} generates an index of all
+ * annotated methods at compile time, which is bound using the {@link ScheduledJobModule}.
+ * No classpath scanning or reflection happens at startup.
+ *
+ * <p>
+ *   Annotated methods must not be private and must not take any parameters. Instance
+ *   methods are invoked on an instance obtained from the injector, the declaring
+ *   class therefore must not be an inner class. Exactly one of {@link #cron()},
+ *   {@link #fixedRate()} and {@link #fixedDelay()} has to be specified.
+ * </p>
+ *
+ * <pre>
+ * &#064;Scheduled(cron = "0 0 3 * * ?", group = "maintenance")
+ * void cleanup() {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Scheduled {
+    
+    /**
+     * The cron expression.
+     */
+    String cron() default "";
+    
+    /**
+     * The period of a fixed rate schedule, see {@link Triggers#fixedRate(long, TimeUnit)}.
+     */
+    long fixedRate() default 0L;
+    
+    /**
+     * The delay of a fixed delay schedule, see {@link Triggers#fixedDelay(long, TimeUnit)}.
+     */
+    long fixedDelay() default 0L;
+    
+    /**
+     * The unit of {@link #fixedRate()} and {@link #fixedDelay()}.
+     */
+    TimeUnit unit() default TimeUnit.MILLISECONDS;
+    
+    /**
+     * The name of the job, defaults to the qualified class name and the method name
+     * separated by {@code #}.
+     */
+    String name() default "";
+    
+    /**
+     * The group of the job, see {@link TriggerOptions#withGroup(String)}.
+     */
+    String group() default "";
+    
+    /**
+     * The tags of the job, see {@link TriggerOptions#withTags(String...)}.
+     */
+    String[] tags() default { };
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import com.google.inject.Module;
+import com.google.inject.Provider;
+
+/**
+ * Index of {@link Scheduled} methods of a single class, generated by the {@link ScheduledProcessor}.
+ * Indices are registered as services in {@code META-INF/services} and installed
+ * by the {@link ScheduledJobModule}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public abstract class ScheduledJobIndex implements Module {
+    
+    /**
+     * Creates a binding of the given command using a cron expression.
+     * 
+     * @since 1.3
+     * @param command the command provider
+     * @param expression the cron expression
+     * @param options the trigger options
+     * @return a new binding
+     */
+    protected static TriggerBinding binding(Provider<? extends Runnable> command, String expression,
+        TriggerOptions options) {
+        return TriggerBindings.of(command, expression, options);
+    }
+    
+    /**
+     * Creates a binding of the given command using a trigger.
+     * 
+     * @since 1.3
+     * @param command the command provider
+     * @param trigger the trigger
+     * @param options the trigger options
+     * @return a new binding
+     */
+    protected static TriggerBinding binding(Provider<? extends Runnable> command, Trigger trigger,
+        TriggerOptions options) {
+        return TriggerBindings.of(command, trigger, options);
+    }
+
+}
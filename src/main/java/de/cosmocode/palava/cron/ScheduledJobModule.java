@@ -0,0 +1,75 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.ServiceLoader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+
+/**
+ * Binds all {@link Scheduled} methods as {@link TriggerBinding}s using the
+ * {@link ScheduledJobIndex}es generated at compile time.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class ScheduledJobModule extends AbstractModule {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(ScheduledJobModule.class);
+    
+    private final ClassLoader loader;
+    
+    /**
+     * Creates a new {@link ScheduledJobModule} which loads all indices
+     * using the context class loader.
+     * 
+     * @since 1.3
+     */
+    public ScheduledJobModule() {
+        this(Thread.currentThread().getContextClassLoader());
+    }
+    
+    /**
+     * Creates a new {@link ScheduledJobModule} which loads all indices
+     * using the specified class loader.
+     * 
+     * @since 1.3
+     * @param loader the class loader
+     * @throws NullPointerException if loader is null
+     */
+    public ScheduledJobModule(ClassLoader loader) {
+        this.loader = Preconditions.checkNotNull(loader, "Loader");
+    }
+    
+    @Override
+    protected void configure() {
+        Multibinder.newSetBinder(binder(), TriggerBinding.class);
+        int count = 0;
+        for (ScheduledJobIndex index : ServiceLoader.load(ScheduledJobIndex.class, loader)) {
+            LOG.trace("Installing {}", index);
+            install(index);
+            count++;
+        }
+        LOG.info("Installed {} scheduled job indices", count);
+    }
+
+}
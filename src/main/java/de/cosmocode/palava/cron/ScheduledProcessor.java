@@ -0,0 +1,361 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.quartz.CronExpression;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Annotation processor which generates a {@link ScheduledJobIndex} for every class
+ * declaring {@link Scheduled} methods and registers all of them in
+ * {@code META-INF/services/de.cosmocode.palava.cron.ScheduledJobIndex}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+@SupportedAnnotationTypes("de.cosmocode.palava.cron.Scheduled")
+public final class ScheduledProcessor extends AbstractProcessor {
+    
+    private static final String SERVICE = "META-INF/services/" + ScheduledJobIndex.class.getName();
+    
+    private static final String SUFFIX = "_ScheduledJobs";
+    
+    private final Set<String> indices = new TreeSet<String>();
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment environment) {
+        if (environment.processingOver()) {
+            if (!indices.isEmpty()) {
+                writeService();
+            }
+            return false;
+        }
+        
+        final Map<TypeElement, List<ExecutableElement>> methods = Maps.newLinkedHashMap();
+        for (Element element : environment.getElementsAnnotatedWith(Scheduled.class)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            final ExecutableElement method = (ExecutableElement) element;
+            if (!isValid(method)) {
+                continue;
+            }
+            final TypeElement type = (TypeElement) method.getEnclosingElement();
+            List<ExecutableElement> list = methods.get(type);
+            if (list == null) {
+                list = Lists.newArrayList();
+                methods.put(type, list);
+            }
+            list.add(method);
+        }
+        
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methods.entrySet()) {
+            try {
+                indices.add(writeIndex(entry.getKey(), entry.getValue()));
+            } catch (IOException e) {
+                error(entry.getKey(), "Unable to write scheduled job index: " + e);
+            }
+        }
+        return true;
+    }
+    
+    private boolean isValid(ExecutableElement method) {
+        final Scheduled scheduled = method.getAnnotation(Scheduled.class);
+        boolean valid = true;
+        if (method.getModifiers().contains(Modifier.PRIVATE)) {
+            valid = error(method, "@Scheduled methods must not be private");
+        }
+        if (!method.getParameters().isEmpty()) {
+            valid = error(method, "@Scheduled methods must not take any parameters");
+        }
+        
+        final boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+        final TypeElement declaring = (TypeElement) method.getEnclosingElement();
+        if (!isStatic && !declaring.getTypeParameters().isEmpty()) {
+            valid = error(method, "@Scheduled instance methods must not be declared by generic classes");
+        }
+        Element current = declaring;
+        while (current instanceof TypeElement) {
+            final TypeElement type = (TypeElement) current;
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                valid = error(method, "@Scheduled methods must not be declared by private classes");
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                valid = error(method, "@Scheduled methods must not be declared by local or anonymous classes");
+            } else if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC) &&
+                type.getEnclosingElement().getKind() != ElementKind.INTERFACE) {
+                valid = error(method, "@Scheduled methods must not be declared by inner classes");
+            }
+            current = type.getEnclosingElement();
+        }
+        
+        int schedules = 0;
+        if (scheduled.cron().length() > 0) {
+            schedules++;
+            if (!CronExpression.isValidExpression(scheduled.cron())) {
+                valid = error(method, "Invalid cron expression '" + scheduled.cron() + "'");
+            }
+        }
+        if (scheduled.fixedRate() != 0L) {
+            schedules++;
+        }
+        if (scheduled.fixedDelay() != 0L) {
+            schedules++;
+        }
+        if (schedules != 1) {
+            valid = error(method, "@Scheduled requires exactly one of cron, fixedRate and fixedDelay");
+        }
+        final long period = scheduled.fixedRate() + scheduled.fixedDelay();
+        if (schedules == 1 && scheduled.cron().length() == 0 && scheduled.unit().toMillis(period) < 1L) {
+            valid = error(method, "@Scheduled period must be at least one millisecond");
+        }
+        return valid;
+    }
+    
+    private boolean error(Element element, String message) {
+        final Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+    
+    private String writeIndex(TypeElement type, List<ExecutableElement> methods) throws IOException {
+        final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        final String typeName = type.getQualifiedName().toString();
+        final String flatName = packageName.length() == 0 ? typeName : typeName.substring(packageName.length() + 1);
+        final String simpleName = flatName.replace('.', '_') + SUFFIX;
+        final String qualifiedName = packageName.length() == 0 ? simpleName : packageName + "." + simpleName;
+        
+        final Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter();
+        final PrintWriter out = new PrintWriter(writer);
+        try {
+            if (packageName.length() > 0) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Index of all scheduled methods of {@link " + typeName + "}.");
+            out.println(" * Generated by {@link " + ScheduledProcessor.class.getName() + "}, do not edit.");
+            out.println(" */");
+            out.println("public final class " + simpleName + " extends " + 
+                ScheduledJobIndex.class.getName() + " {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public void configure(com.google.inject.Binder binder) {");
+            out.println("        final com.google.inject.multibindings.Multibinder<" + 
+                TriggerBinding.class.getName() + "> bindings =");
+            out.println("            com.google.inject.multibindings.Multibinder.newSetBinder(");
+            out.println("                binder, " + TriggerBinding.class.getName() + ".class);");
+            boolean needsTarget = false;
+            for (ExecutableElement method : methods) {
+                needsTarget |= !method.getModifiers().contains(Modifier.STATIC);
+            }
+            if (needsTarget) {
+                out.println("        final com.google.inject.Provider<" + typeName + "> target = binder.getProvider(" + 
+                    typeName + ".class);");
+            }
+            for (ExecutableElement method : methods) {
+                writeBinding(out, typeName, method);
+            }
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public String toString() {");
+            out.println("        return " + literal(simpleName) + ";");
+            out.println("    }");
+            out.println();
+            out.println("}");
+        } finally {
+            out.close();
+        }
+        return qualifiedName;
+    }
+    
+    private void writeBinding(PrintWriter out, String typeName, ExecutableElement method) {
+        final Scheduled scheduled = method.getAnnotation(Scheduled.class);
+        final boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+        final String methodName = method.getSimpleName().toString();
+        final String name = scheduled.name().length() == 0 ? typeName + "#" + methodName : scheduled.name();
+        
+        final StringBuilder options = new StringBuilder(TriggerOptions.class.getName());
+        options.append(".defaults().withName(").append(literal(name)).append(")");
+        if (scheduled.group().length() > 0) {
+            options.append(".withGroup(").append(literal(scheduled.group())).append(")");
+        }
+        for (String tag : scheduled.tags()) {
+            options.append(".withTags(").append(literal(tag)).append(")");
+        }
+        
+        final String schedule;
+        if (scheduled.cron().length() > 0) {
+            schedule = literal(scheduled.cron());
+        } else {
+            final String factory = scheduled.fixedRate() != 0L ? "fixedRate" : "fixedDelay";
+            final long period = scheduled.fixedRate() != 0L ? scheduled.fixedRate() : scheduled.fixedDelay();
+            schedule = Triggers.class.getName() + "." + factory + "(" + period + "L, java.util.concurrent.TimeUnit." + 
+                scheduled.unit().name() + ")";
+        }
+        
+        final String invocation = (isStatic ? typeName : "instance") + "." + methodName + "();";
+        
+        out.println("        bindings.addBinding().toInstance(binding(new com.google.inject.Provider<Runnable>() {");
+        out.println();
+        out.println("            @Override");
+        out.println("            public Runnable get() {");
+        if (!isStatic) {
+            out.println("                final " + typeName + " instance = target.get();");
+        }
+        out.println("                return new Runnable() {");
+        out.println();
+        out.println("                    @Override");
+        out.println("                    public void run() {");
+        if (method.getThrownTypes().isEmpty()) {
+            out.println("                        " + invocation);
+        } else {
+            out.println("                        try {");
+            out.println("                            " + invocation);
+            // methods may declare any throwable, including Throwable itself
+            out.println("                        } catch (RuntimeException e) {");
+            out.println("                            throw e;");
+            out.println("                        } catch (Error e) {");
+            out.println("                            throw e;");
+            out.println("                        } catch (Throwable e) {");
+            out.println("                            throw new IllegalStateException(e);");
+            out.println("                        }");
+        }
+        out.println("                    }");
+        out.println();
+        out.println("                    @Override");
+        out.println("                    public String toString() {");
+        out.println("                        return " + literal(name) + ";");
+        out.println("                    }");
+        out.println();
+        out.println("                };");
+        out.println("            }");
+        out.println();
+        out.println("        }, " + schedule + ",");
+        out.println("            " + options + "));");
+    }
+    
+    private void writeService() {
+        // merge with a previous compilation, e.g. during incremental builds
+        try {
+            final FileObject existing = processingEnv.getFiler().getResource(
+                StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(existing.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().length() > 0) {
+                        indices.add(line.trim());
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // no previous compilation
+        }
+        
+        try {
+            final FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            final PrintWriter out = new PrintWriter(file.openWriter());
+            try {
+                for (String index : indices) {
+                    out.println(index);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, 
+                "Unable to write " + SERVICE + ": " + e);
+        }
+    }
+    
+    private static String literal(String value) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"': {
+                    builder.append("\\\"");
+                    break;
+                }
+                case '\\': {
+                    builder.append("\\\\");
+                    break;
+                }
+                case '\n': {
+                    builder.append("\\n");
+                    break;
+                }
+                case '\r': {
+                    builder.append("\\r");
+                    break;
+                }
+                case '\t': {
+                    builder.append("\\t");
+                    break;
+                }
+                default: {
+                    if (c < 0x20 || c > 0x7e) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+}
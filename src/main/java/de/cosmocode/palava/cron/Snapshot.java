@@ -0,0 +1,250 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+/**
+ * Versioned binary snapshot of the state of named jobs, used to restore
+ * next fire times and counters after a restart without recomputing them.
+ *
+ * <p>
+ *   Layout: magic number, version (short), number of distinct triggers (int), the length
+ *   prefixed UTF-8 trigger descriptions, number of entries (int), followed by the entries.
+ *   Each entry consists of the length prefixed UTF-8 name, the index of its trigger (int)
+ *   and five longs: next fire time, runs, failures, overruns and misfires. Triggers are
+ *   shared by many jobs in large schedules, hence each one is stored and decoded only once.
+ *   Snapshots are read using a memory mapped buffer.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class Snapshot {
+    
+    static final int MAGIC = 0x43524F4E;
+    
+    static final short VERSION = 1;
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    private Snapshot() {
+    
+    }
+    
+    /**
+     * Writes the given entries to the specified file. The file is replaced atomically
+     * where the platform supports it, so readers never see partially written snapshots.
+     *
+     * @param file the target file
+     * @param entries the entries to write
+     * @throws IOException if writing failed
+     */
+    public static void write(File file, Collection<Entry> entries) throws IOException {
+        Preconditions.checkNotNull(file, "File");
+        Preconditions.checkNotNull(entries, "Entries");
+        final File temporary = new File(file.getPath() + ".tmp");
+        final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(temporary)));
+        try {
+            stream.writeInt(MAGIC);
+            stream.writeShort(VERSION);
+            
+            final Map<String, Integer> triggers = Maps.newLinkedHashMap();
+            for (Entry entry : entries) {
+                if (!triggers.containsKey(entry.trigger)) {
+                    triggers.put(entry.trigger, triggers.size());
+                }
+            }
+            stream.writeInt(triggers.size());
+            for (String trigger : triggers.keySet()) {
+                writeString(stream, trigger);
+            }
+            
+            stream.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeString(stream, entry.name);
+                stream.writeInt(triggers.get(entry.trigger).intValue());
+                stream.writeLong(entry.nextFireTime);
+                stream.writeLong(entry.runs);
+                stream.writeLong(entry.failures);
+                stream.writeLong(entry.overruns);
+                stream.writeLong(entry.misfires);
+            }
+        } finally {
+            stream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            // some platforms refuse to rename onto an existing file
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Unable to replace " + file + " with " + temporary);
+            }
+        }
+    }
+    
+    private static void writeString(DataOutputStream stream, String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+        stream.writeInt(bytes.length);
+        stream.write(bytes);
+    }
+    
+    /**
+     * Reads all entries of the given snapshot file.
+     *
+     * @param file the snapshot file
+     * @return all entries mapped by job name
+     * @throws IOException if reading failed, the file is no snapshot, uses
+     *         an unsupported version or is truncated
+     */
+    public static Map<String, Entry> read(File file) throws IOException {
+        Preconditions.checkNotNull(file, "File");
+        final FileInputStream stream = new FileInputStream(file);
+        try {
+            final FileChannel channel = stream.getChannel();
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is no cron snapshot");
+            }
+            final short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            final int distinct = buffer.getInt();
+            final List<String> triggers = Lists.newArrayListWithCapacity(distinct);
+            for (int i = 0; i < distinct; i++) {
+                triggers.add(readString(buffer));
+            }
+            
+            final int size = buffer.getInt();
+            final Map<String, Entry> entries = new HashMap<String, Entry>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                final String name = readString(buffer);
+                final String trigger = triggers.get(buffer.getInt());
+                entries.put(name, new Entry(name, trigger, buffer.getLong(), 
+                    buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong()));
+            }
+            return entries;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot " + file);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt snapshot " + file);
+        } finally {
+            Closeables.closeQuietly(stream);
+        }
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        final int start = buffer.position();
+        // fast path for plain ascii, which avoids the charset decoder
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            final byte b = buffer.get(start + i);
+            if (b < 0) {
+                final byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                return new String(bytes, UTF8);
+            }
+            chars[i] = (char) b;
+        }
+        buffer.position(start + length);
+        return new String(chars);
+    }
+    
+    /**
+     * The persisted state of a single named job.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    static final class Entry {
+        
+        private final String name;
+        
+        private final String trigger;
+        
+        private final long nextFireTime;
+        
+        private final long runs;
+        
+        private final long failures;
+        
+        private final long overruns;
+        
+        private final long misfires;
+        
+        public Entry(String name, String trigger, long nextFireTime, 
+            long runs, long failures, long overruns, long misfires) {
+            this.name = Preconditions.checkNotNull(name, "Name");
+            this.trigger = Preconditions.checkNotNull(trigger, "Trigger");
+            this.nextFireTime = nextFireTime;
+            this.runs = runs;
+            this.failures = failures;
+            this.overruns = overruns;
+            this.misfires = misfires;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public String getTrigger() {
+            return trigger;
+        }
+        
+        public long getNextFireTime() {
+            return nextFireTime;
+        }
+        
+        public long getRuns() {
+            return runs;
+        }
+        
+        public long getFailures() {
+            return failures;
+        }
+        
+        public long getOverruns() {
+            return overruns;
+        }
+        
+        public long getMisfires() {
+            return misfires;
+        }
+    
+    }
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * Immutable snapshot of the dispatch statistics of a single tenant, as provided
+ * by {@link CronService#getTenants()}.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class TenantInfo {
+    
+    private final String name;
+    
+    private final int weight;
+    
+    private final int queued;
+    
+    private final long dispatched;
+    
+    private final double meanLateness;
+    
+    private final long p99Lateness;
+    
+    TenantInfo(String name, int weight, int queued, long dispatched, DurationSampler lateness) {
+        this.name = name;
+        this.weight = weight;
+        this.queued = queued;
+        this.dispatched = dispatched;
+        this.meanLateness = lateness.getMean();
+        this.p99Lateness = lateness.getPercentile(99);
+    }
+    
+    /**
+     * Provides the tenant name.
+     *
+     * @since 1.3
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Provides the weight, which is the number of runs the tenant may dispatch per round.
+     *
+     * @since 1.3
+     * @return the weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+    
+    /**
+     * Provides the number of runs waiting for dispatch.
+     *
+     * @since 1.3
+     * @return the number of queued runs
+     */
+    public int getQueued() {
+        return queued;
+    }
+    
+    /**
+     * Provides the number of runs dispatched since startup.
+     *
+     * @since 1.3
+     * @return the number of dispatched runs
+     */
+    public long getDispatched() {
+        return dispatched;
+    }
+    
+    /**
+     * Provides the mean time between the scheduled time and the dispatch of all runs.
+     *
+     * @since 1.3
+     * @return the mean lateness in milliseconds
+     */
+    public double getMeanLateness() {
+        return meanLateness;
+    }
+    
+    /**
+     * Provides the 99th percentile time between the scheduled time and the dispatch
+     * of the most recent runs.
+     *
+     * @since 1.3
+     * @return the 99th percentile lateness in milliseconds
+     */
+    public long getP99Lateness() {
+        return p99Lateness;
+    }
+    
+    @Override
+    public String toString() {
+        return "TenantInfo [name=" + name + ", weight=" + weight + ", queued=" + queued + 
+            ", dispatched=" + dispatched + ", meanLateness=" + meanLateness + ", p99Lateness=" + p99Lateness + "]";
+    }
+
+}
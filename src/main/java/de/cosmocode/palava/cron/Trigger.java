@@ -0,0 +1,52 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+/**
+ * A trigger computes the points in time at which a scheduled task should run.
+ * All times are in milliseconds since midnight, January 1, 1970 UTC. Use
+ * {@link Triggers} to create instances.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public interface Trigger {
+
+    /**
+     * Computes the time of the first run.
+     * 
+     * @since 1.3
+     * @param now the current time
+     * @return the time of the first run or -1 if this trigger never fires
+     */
+    long first(long now);
+    
+    /**
+     * Computes the time of the next run based on the previous one. A skipped run
+     * never started, hence started equals scheduled and finished is the time it
+     * has been skipped. Slots passed while catching up with overdue runs use their
+     * scheduled time for all three arguments.
+     * 
+     * @since 1.3
+     * @param scheduled the time the previous run was scheduled for
+     * @param started the time the previous run actually started
+     * @param finished the time the previous run finished
+     * @return the time of the next run or -1 if this trigger won't fire anymore
+     */
+    long next(long scheduled, long started, long finished);
+    
+}
@@ -23,6 +23,8 @@ import org.quartz.CronExpression;
  * keeping track of a {@link Runnable} and a cron
  * expression. Using both values to configure
  * a scheduling is left to implementations.
+ * Bindings using other triggers, options or executors
+ * implement {@link ConfiguredTriggerBinding}.
  *
  * @author Willi Schoenborn
  */
@@ -38,7 +40,8 @@ public interface TriggerBinding {
     /**
      * Provides the cron expression associated with this binding.
      * 
-     * @return the expression
+     * @return the expression, which may be null for {@link ConfiguredTriggerBinding}s
+     *         whose trigger is not based on a cron expression
      */
     CronExpression getExpression();
     
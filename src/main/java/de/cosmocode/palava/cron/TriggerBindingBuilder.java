@@ -17,6 +17,8 @@
 package de.cosmocode.palava.cron;
 
 import java.lang.annotation.Annotation;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A builder which is part of the EDSL provided
@@ -26,6 +28,164 @@ import java.lang.annotation.Annotation;
  */
 public interface TriggerBindingBuilder {
 
+    /**
+     * Limits the execution time of every run of the configured binding target.
+     * Runs exceeding the timeout are interrupted and rescheduled.
+     * 
+     * @since 1.3
+     * @param duration the maximum execution time
+     * @param unit the unit of duration
+     * @return this builder
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    TriggerBindingBuilder timeout(long duration, TimeUnit unit);
+
+    /**
+     * Sets the human readable name of the configured binding target.
+     * 
+     * @since 1.3
+     * @param name the name
+     * @return this builder
+     * @throws NullPointerException if name is null
+     */
+    TriggerBindingBuilder named(String name);
+
+    /**
+     * Puts the configured binding target into the specified group.
+     * 
+     * @since 1.3
+     * @param group the group
+     * @return this builder
+     * @throws NullPointerException if group is null
+     */
+    TriggerBindingBuilder inGroup(String group);
+
+    /**
+     * Tags the configured binding target with the specified tags.
+     * 
+     * @since 1.3
+     * @param tags the tags
+     * @return this builder
+     * @throws NullPointerException if tags is or contains null
+     */
+    TriggerBindingBuilder tagged(String... tags);
+
+    /**
+     * Excludes the time ranges of the specified calendar, e.g. holidays or
+     * maintenance windows. Runs falling into an excluded range are skipped
+     * and the configured binding target runs at the first satisfying time
+     * after the exclusion instead.
+     * 
+     * @since 1.3
+     * @param calendar the calendar, see {@link ExclusionCalendars}
+     * @return this builder
+     * @throws NullPointerException if calendar is null
+     */
+    TriggerBindingBuilder excluding(ExclusionCalendar calendar);
+
+    /**
+     * Sets the policy for overdue runs of the configured binding target.
+     * 
+     * @since 1.3
+     * @param policy the misfire policy
+     * @return this builder
+     * @throws NullPointerException if policy is null
+     */
+    TriggerBindingBuilder onMisfire(MisfirePolicy policy);
+
+    /**
+     * Sets the lateness after which a run of the configured binding target is overdue.
+     * 
+     * @since 1.3
+     * @param duration the misfire threshold
+     * @param unit the unit of duration
+     * @return this builder
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    TriggerBindingBuilder misfireThreshold(long duration, TimeUnit unit);
+
+    /**
+     * Limits the rate of replayed runs when using {@link MisfirePolicy#REPLAY}.
+     * 
+     * @since 1.3
+     * @param duration the minimum time between two replayed runs
+     * @param unit the unit of duration
+     * @return this builder
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    TriggerBindingBuilder replayInterval(long duration, TimeUnit unit);
+
+    /**
+     * Performs the runs of the configured binding target using the {@link Executor}
+     * bound with the specified annotation instead of the default {@link Cron} executor.
+     * The timer only hands runs over to the executor, hence long running or CPU
+     * bound targets don't delay the runs of other bindings.
+     * 
+     * @since 1.3
+     * @param annotation the binding annotation of the executor
+     * @return this builder
+     * @throws NullPointerException if annotation is null
+     */
+    TriggerBindingBuilder executedBy(Annotation annotation);
+
+    /**
+     * Performs the runs of the configured binding target using the {@link Executor}
+     * bound with the specified annotation type instead of the default {@link Cron} executor.
+     * 
+     * @since 1.3
+     * @param annotationType the binding annotation type of the executor
+     * @return this builder
+     * @throws NullPointerException if annotationType is null
+     */
+    TriggerBindingBuilder executedBy(Class<? extends Annotation> annotationType);
+
+    /**
+     * Assigns the configured binding target to the specified bulkhead, which limits
+     * the number of concurrent runs of all its members.
+     * 
+     * @since 1.3
+     * @param name the name of a bulkhead defined using {@link CronModule#bulkhead(String, int, int)}
+     * @return this builder
+     * @throws NullPointerException if name is null
+     * @throws IllegalStateException if a tenant has been set already
+     */
+    TriggerBindingBuilder inBulkhead(String name);
+
+    /**
+     * Fires the runs of the configured binding target using a dedicated high resolution timer,
+     * see {@link TriggerOptions#withHighResolution()}.
+     * 
+     * @since 1.3
+     * @return this builder
+     */
+    TriggerBindingBuilder highResolution();
+
+    /**
+     * Dispatches the runs of the configured binding target fairly on behalf of the specified
+     * tenant, see {@link TriggerOptions#withTenant(String)}.
+     * 
+     * @since 1.3
+     * @param name the name of the tenant
+     * @return this builder
+     * @throws NullPointerException if name is null
+     * @throws IllegalStateException if a bulkhead has been set already
+     */
+    TriggerBindingBuilder forTenant(String name);
+
+    /**
+     * Prevents runs of the configured binding target from overlapping with runs of other
+     * bindings sharing one of the specified groups, see {@link TriggerOptions#withExclusionGroups(String...)}.
+     * 
+     * @since 1.3
+     * @param groups the names of the mutual exclusion groups
+     * @return this builder
+     * @throws NullPointerException if groups is or contains null
+     */
+    TriggerBindingBuilder mutuallyExclusive(String... groups);
+
     /**
      * Schedules the configured binding target using the specified
      * cron expression.
@@ -53,4 +213,37 @@ public interface TriggerBindingBuilder {
      */
     void using(Class<? extends Annotation> annotationType);
     
+    /**
+     * Schedules the configured binding target using the specified trigger.
+     * 
+     * @since 1.3
+     * @param trigger the trigger, see {@link Triggers}
+     * @throws NullPointerException if trigger is null
+     */
+    void using(Trigger trigger);
+    
+    /**
+     * Schedules the configured binding target to run periodically with the
+     * specified period. Periods below one second are supported.
+     * 
+     * @since 1.3
+     * @param period the period between two successive runs
+     * @param unit the unit of period
+     * @throws IllegalArgumentException if period is less than one millisecond
+     * @throws NullPointerException if unit is null
+     */
+    void atFixedRate(long period, TimeUnit unit);
+    
+    /**
+     * Schedules the configured binding target to run with the specified delay
+     * between the end of a run and the start of the next one.
+     * 
+     * @since 1.3
+     * @param delay the delay between two successive runs
+     * @param unit the unit of delay
+     * @throws IllegalArgumentException if delay is less than one millisecond
+     * @throws NullPointerException if unit is null
+     */
+    void withFixedDelay(long delay, TimeUnit unit);
+    
 }
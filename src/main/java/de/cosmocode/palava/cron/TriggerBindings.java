@@ -16,6 +16,8 @@
 
 package de.cosmocode.palava.cron;
 
+import java.util.concurrent.Executor;
+
 import org.quartz.CronExpression;
 
 import com.google.common.base.Preconditions;
@@ -35,19 +37,21 @@ final class TriggerBindings {
     }
 
     /**
-     * Creates a new {@link TriggerBinding} using the specified providers.
+     * Creates a new {@link ConfiguredTriggerBinding} using the specified providers.
      * 
      * @param command the provider for the command
      * @param expression the provider for the cron expression
-     * @return a {@link TriggerBinding} which delegates to the specified provides
+     * @param options the options of the binding
+     * @return a {@link ConfiguredTriggerBinding} which delegates to the specified provides
      *         when requested
-     * @throws NullPointerException if command or expression is null
+     * @throws NullPointerException if command, expression or options is null
      */
-    public static TriggerBinding of(final Provider<? extends Runnable> command, 
-        final Provider<? extends CronExpression> expression) {
+    public static ConfiguredTriggerBinding of(final Provider<? extends Runnable> command, 
+        final Provider<? extends CronExpression> expression, final TriggerOptions options) {
         Preconditions.checkNotNull(command, "Command");
-        Preconditions.checkNotNull(expression, "Expression");        
-        return new TriggerBinding() {
+        Preconditions.checkNotNull(expression, "Expression");
+        Preconditions.checkNotNull(options, "Options");
+        return new ConfiguredTriggerBinding() {
 
             @Override
             public Runnable getCommand() {
@@ -59,23 +63,41 @@ final class TriggerBindings {
                 return expression.get();
             }
             
+            @Override
+            public Trigger getTrigger() {
+                return Triggers.cron(getExpression());
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return options;
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+            
         };
     }
     
     /**
-     * Creates a new {@link TriggerBinding} using the specified provider and
+     * Creates a new {@link ConfiguredTriggerBinding} using the specified provider and
      * cron expression.
      * 
      * @param command the provider for the command
      * @param expression the cron expression
-     * @return a {@link TriggerBinding} which delegates to the specified provider
+     * @param options the options of the binding
+     * @return a {@link ConfiguredTriggerBinding} which delegates to the specified provider
      *         when requested
-     * @throws NullPointerException if command or expression is null
+     * @throws NullPointerException if command, expression or options is null
      */
-    public static TriggerBinding of(final Provider<? extends Runnable> command, final String expression) {
+    public static ConfiguredTriggerBinding of(final Provider<? extends Runnable> command, final String expression,
+        final TriggerOptions options) {
         Preconditions.checkNotNull(command, "Command");
         Preconditions.checkNotNull(expression, "Expression");
-        return new TriggerBinding() {
+        Preconditions.checkNotNull(options, "Options");
+        return new ConfiguredTriggerBinding() {
             
             @Override
             public Runnable getCommand() {
@@ -87,22 +109,40 @@ final class TriggerBindings {
                 return CONVERTER.convert(expression, CronExpressionConverter.LITERAL);
             }
             
+            @Override
+            public Trigger getTrigger() {
+                return Triggers.cron(getExpression());
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return options;
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+            
         };
     }
     
     /**
-     * Creates a new {@link TriggerBinding} using the specified provider and cron expression.
+     * Creates a new {@link ConfiguredTriggerBinding} using the specified provider and cron expression.
      * 
      * @param command the provider for the command
      * @param expression the cron expression
-     * @return a {@link TriggerBinding} which delegates to the specified provider
+     * @param options the options of the binding
+     * @return a {@link ConfiguredTriggerBinding} which delegates to the specified provider
      *         when requested
-     * @throws NullPointerException if command or expression is null
+     * @throws NullPointerException if command, expression or options is null
      */
-    public static TriggerBinding of(final Provider<? extends Runnable> command, final CronExpression expression) {
+    public static ConfiguredTriggerBinding of(final Provider<? extends Runnable> command, 
+        final CronExpression expression, final TriggerOptions options) {
         Preconditions.checkNotNull(command, "Command");
         Preconditions.checkNotNull(expression, "Expression");
-        return new TriggerBinding() {
+        Preconditions.checkNotNull(options, "Options");
+        return new ConfiguredTriggerBinding() {
             
             @Override
             public Runnable getCommand() {
@@ -114,6 +154,155 @@ final class TriggerBindings {
                 return expression;
             }
             
+            @Override
+            public Trigger getTrigger() {
+                return Triggers.cron(expression);
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return options;
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+            
+        };
+    }
+    
+    /**
+     * Creates a new {@link ConfiguredTriggerBinding} using the specified provider and trigger.
+     * 
+     * @since 1.3
+     * @param command the provider for the command
+     * @param trigger the trigger
+     * @param options the options of the binding
+     * @return a {@link ConfiguredTriggerBinding} which delegates to the specified provider
+     *         when requested
+     * @throws NullPointerException if command, trigger or options is null
+     */
+    public static ConfiguredTriggerBinding of(final Provider<? extends Runnable> command, final Trigger trigger,
+        final TriggerOptions options) {
+        Preconditions.checkNotNull(command, "Command");
+        Preconditions.checkNotNull(trigger, "Trigger");
+        Preconditions.checkNotNull(options, "Options");
+        return new ConfiguredTriggerBinding() {
+            
+            @Override
+            public Runnable getCommand() {
+                return command.get();
+            }
+            
+            @Override
+            public CronExpression getExpression() {
+                return Triggers.getExpression(trigger);
+            }
+            
+            @Override
+            public Trigger getTrigger() {
+                return trigger;
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return options;
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+            
+        };
+    }
+    
+    /**
+     * Adapts the given binding to a {@link ConfiguredTriggerBinding}. Plain bindings use the
+     * trigger of their cron expression, the default options and the default {@link Cron} executor.
+     * 
+     * @since 1.3
+     * @param binding the binding
+     * @return the given binding if it is a {@link ConfiguredTriggerBinding} already, or an adapter
+     * @throws NullPointerException if binding is null
+     */
+    public static ConfiguredTriggerBinding configured(final TriggerBinding binding) {
+        Preconditions.checkNotNull(binding, "Binding");
+        if (binding instanceof ConfiguredTriggerBinding) {
+            return ConfiguredTriggerBinding.class.cast(binding);
+        }
+        return new ConfiguredTriggerBinding() {
+            
+            @Override
+            public Runnable getCommand() {
+                return binding.getCommand();
+            }
+            
+            @Override
+            public CronExpression getExpression() {
+                return binding.getExpression();
+            }
+            
+            @Override
+            public Trigger getTrigger() {
+                return Triggers.cron(binding.getExpression());
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return TriggerOptions.defaults();
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return null;
+            }
+            
+        };
+    }
+    
+    /**
+     * Creates a new {@link ConfiguredTriggerBinding} which delegates to the specified binding but
+     * performs its runs using the executor of the given provider.
+     * 
+     * @since 1.3
+     * @param binding the binding
+     * @param executor the provider for the executor
+     * @return a {@link ConfiguredTriggerBinding} which uses the specified executor
+     * @throws NullPointerException if binding or executor is null
+     */
+    public static ConfiguredTriggerBinding executedBy(TriggerBinding binding, 
+        final Provider<? extends Executor> executor) {
+        final ConfiguredTriggerBinding configured = configured(binding);
+        Preconditions.checkNotNull(executor, "Executor");
+        return new ConfiguredTriggerBinding() {
+            
+            @Override
+            public Runnable getCommand() {
+                return configured.getCommand();
+            }
+            
+            @Override
+            public CronExpression getExpression() {
+                return configured.getExpression();
+            }
+            
+            @Override
+            public Trigger getTrigger() {
+                return configured.getTrigger();
+            }
+            
+            @Override
+            public TriggerOptions getOptions() {
+                return configured.getOptions();
+            }
+            
+            @Override
+            public Executor getExecutor() {
+                return executor.get();
+            }
+            
         };
     }
     
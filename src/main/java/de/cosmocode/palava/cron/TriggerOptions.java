@@ -0,0 +1,419 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Immutable value object holding the per binding settings of a scheduled task.
+ * Every {@code with*} method returns a modified copy and leaves
+ * the current instance untouched.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class TriggerOptions {
+    
+    private static final TriggerOptions DEFAULTS = new TriggerOptions();
+    
+    private long timeout;
+    
+    private String name;
+    
+    private String group;
+    
+    private ImmutableSet<String> tags = ImmutableSet.of();
+    
+    private ExclusionCalendar exclusions;
+    
+    private MisfirePolicy misfirePolicy = MisfirePolicy.COALESCE;
+    
+    private long misfireThreshold;
+    
+    private long replayInterval = 1000L;
+    
+    private String bulkhead;
+    
+    private boolean highResolution;
+    
+    private String tenant;
+    
+    private ImmutableSet<String> exclusionGroups = ImmutableSet.of();
+    
+    private TriggerOptions() {
+    
+    }
+    
+    private TriggerOptions(TriggerOptions other) {
+        this.timeout = other.timeout;
+        this.name = other.name;
+        this.group = other.group;
+        this.tags = other.tags;
+        this.exclusions = other.exclusions;
+        this.misfirePolicy = other.misfirePolicy;
+        this.misfireThreshold = other.misfireThreshold;
+        this.replayInterval = other.replayInterval;
+        this.bulkhead = other.bulkhead;
+        this.highResolution = other.highResolution;
+        this.tenant = other.tenant;
+        this.exclusionGroups = other.exclusionGroups;
+    }
+    
+    /**
+     * Provides the default options, which inherit every setting
+     * from the service wide configuration.
+     *
+     * @since 1.3
+     * @return the default options
+     */
+    public static TriggerOptions defaults() {
+        return DEFAULTS;
+    }
+    
+    /**
+     * Provides the maximum execution time in milliseconds.
+     *
+     * @since 1.3
+     * @return the execution timeout in milliseconds or 0 if the
+     *         service wide timeout should be used
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified execution timeout.
+     *
+     * @since 1.3
+     * @param duration the maximum execution time, 0 to use the service wide timeout
+     * @param unit the unit of duration
+     * @return a copy of this options with the given timeout
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    public TriggerOptions withTimeout(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Timeout must not be negative, but was %s", duration);
+        Preconditions.checkNotNull(unit, "Unit");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.timeout = unit.toMillis(duration);
+        return copy;
+    }
+    
+    /**
+     * Provides the human readable name.
+     *
+     * @since 1.3
+     * @return the name or null if this options define no name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified name.
+     *
+     * @since 1.3
+     * @param name the name
+     * @return a copy of this options with the given name
+     * @throws NullPointerException if name is null
+     */
+    public TriggerOptions withName(String name) {
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.name = Preconditions.checkNotNull(name, "Name");
+        return copy;
+    }
+    
+    /**
+     * Provides the group.
+     *
+     * @since 1.3
+     * @return the group or null if this options define no group
+     */
+    public String getGroup() {
+        return group;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified group.
+     *
+     * @since 1.3
+     * @param group the group
+     * @return a copy of this options with the given group
+     * @throws NullPointerException if group is null
+     */
+    public TriggerOptions withGroup(String group) {
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.group = Preconditions.checkNotNull(group, "Group");
+        return copy;
+    }
+    
+    /**
+     * Provides the tags.
+     *
+     * @since 1.3
+     * @return an immutable set of all tags, never null
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+    
+    /**
+     * Creates a copy of this options additionally tagged with the specified tags.
+     *
+     * @since 1.3
+     * @param additionalTags the tags to add
+     * @return a copy of this options with the given tags added
+     * @throws NullPointerException if additionalTags is or contains null
+     */
+    public TriggerOptions withTags(String... additionalTags) {
+        Preconditions.checkNotNull(additionalTags, "Tags");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.tags = ImmutableSet.<String>builder().addAll(tags).add(additionalTags).build();
+        return copy;
+    }
+    
+    /**
+     * Provides the calendar of excluded time ranges.
+     *
+     * @since 1.3
+     * @return the exclusions or null if this options define no exclusions
+     */
+    public ExclusionCalendar getExclusions() {
+        return exclusions;
+    }
+    
+    /**
+     * Creates a copy of this options additionally excluding everything the
+     * given calendar excludes. Runs falling into an excluded range are skipped.
+     *
+     * @since 1.3
+     * @param calendar the calendar, see {@link ExclusionCalendars}
+     * @return a copy of this options with the given exclusions added
+     * @throws NullPointerException if calendar is null
+     */
+    public TriggerOptions withExclusions(ExclusionCalendar calendar) {
+        Preconditions.checkNotNull(calendar, "Calendar");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.exclusions = exclusions == null ? calendar : ExclusionCalendars.union(exclusions, calendar);
+        return copy;
+    }
+    
+    /**
+     * Provides the policy for overdue runs.
+     *
+     * @since 1.3
+     * @return the misfire policy, {@link MisfirePolicy#COALESCE} by default
+     */
+    public MisfirePolicy getMisfirePolicy() {
+        return misfirePolicy;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified misfire policy.
+     *
+     * @since 1.3
+     * @param policy the policy for overdue runs
+     * @return a copy of this options with the given misfire policy
+     * @throws NullPointerException if policy is null
+     */
+    public TriggerOptions withMisfirePolicy(MisfirePolicy policy) {
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.misfirePolicy = Preconditions.checkNotNull(policy, "Policy");
+        return copy;
+    }
+    
+    /**
+     * Provides the lateness in milliseconds after which a run is considered overdue.
+     *
+     * @since 1.3
+     * @return the misfire threshold in milliseconds or 0 if the
+     *         service wide threshold should be used
+     */
+    public long getMisfireThreshold() {
+        return misfireThreshold;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified misfire threshold.
+     *
+     * @since 1.3
+     * @param duration the lateness after which a run is overdue, 0 to use the service wide threshold
+     * @param unit the unit of duration
+     * @return a copy of this options with the given misfire threshold
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    public TriggerOptions withMisfireThreshold(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Threshold must not be negative, but was %s", duration);
+        Preconditions.checkNotNull(unit, "Unit");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.misfireThreshold = unit.toMillis(duration);
+        return copy;
+    }
+    
+    /**
+     * Provides the minimum time in milliseconds between two replayed runs.
+     *
+     * @since 1.3
+     * @return the replay interval in milliseconds
+     */
+    public long getReplayInterval() {
+        return replayInterval;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified replay interval, which
+     * limits the rate of replayed runs when using {@link MisfirePolicy#REPLAY}.
+     *
+     * @since 1.3
+     * @param duration the minimum time between two replayed runs
+     * @param unit the unit of duration
+     * @return a copy of this options with the given replay interval
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    public TriggerOptions withReplayInterval(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Interval must not be negative, but was %s", duration);
+        Preconditions.checkNotNull(unit, "Unit");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.replayInterval = unit.toMillis(duration);
+        return copy;
+    }
+    
+    /**
+     * Provides the name of the bulkhead limiting concurrent runs.
+     *
+     * @since 1.3
+     * @return the bulkhead name or null if runs are not limited
+     */
+    public String getBulkhead() {
+        return bulkhead;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified bulkhead. The bulkhead has to
+     * be defined using {@link CronModule#bulkhead(String, int, int)}. Bulkheads and
+     * tenants exclude each other.
+     *
+     * @since 1.3
+     * @param name the name of the bulkhead
+     * @return a copy of this options with the given bulkhead
+     * @throws NullPointerException if name is null
+     * @throws IllegalStateException if this options already use a tenant
+     */
+    public TriggerOptions withBulkhead(String name) {
+        Preconditions.checkState(tenant == null, "Bulkheads can't be combined with tenant %s", tenant);
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.bulkhead = Preconditions.checkNotNull(name, "Name");
+        return copy;
+    }
+    
+    /**
+     * Checks whether runs are fired using the high resolution timer.
+     *
+     * @since 1.3
+     * @return true if high resolution firing is enabled
+     */
+    public boolean isHighResolution() {
+        return highResolution;
+    }
+    
+    /**
+     * Creates a copy of this options which fires runs using a dedicated high resolution
+     * timer. Runs are fired within a fraction of a millisecond of their scheduled time,
+     * at the expense of the timer spinning shortly before each run. The timer only hands
+     * runs over to the executor or, if there is none, to the scheduler.
+     *
+     * @since 1.3
+     * @return a copy of this options with high resolution firing enabled
+     */
+    public TriggerOptions withHighResolution() {
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.highResolution = true;
+        return copy;
+    }
+    
+    /**
+     * Provides the tenant on whose behalf runs are performed.
+     *
+     * @since 1.3
+     * @return the tenant or null if runs are not dispatched fairly
+     */
+    public String getTenant() {
+        return tenant;
+    }
+    
+    /**
+     * Creates a copy of this options using the specified tenant. Runs of different tenants
+     * are dispatched to the executor, or the scheduler if there is none, using weighted
+     * round robin, see {@link CronModule#tenant(String, int)}. Bulkheads and tenants
+     * exclude each other.
+     *
+     * @since 1.3
+     * @param name the name of the tenant
+     * @return a copy of this options with the given tenant
+     * @throws NullPointerException if name is null
+     * @throws IllegalStateException if this options already use a bulkhead
+     */
+    public TriggerOptions withTenant(String name) {
+        Preconditions.checkState(bulkhead == null, "Tenants can't be combined with bulkhead %s", bulkhead);
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.tenant = Preconditions.checkNotNull(name, "Name");
+        return copy;
+    }
+    
+    /**
+     * Provides the mutual exclusion groups.
+     *
+     * @since 1.3
+     * @return an immutable set of all exclusion groups, never null
+     */
+    public Set<String> getExclusionGroups() {
+        return exclusionGroups;
+    }
+    
+    /**
+     * Creates a copy of this options additionally assigned to the specified mutual exclusion groups.
+     * A run never overlaps with a run of another job sharing one of its groups. Conflicting runs
+     * are deferred without occupying a thread and start as soon as all their groups are free.
+     *
+     * @since 1.3
+     * @param groups the names of the groups to add
+     * @return a copy of this options with the given exclusion groups added
+     * @throws NullPointerException if groups is or contains null
+     */
+    public TriggerOptions withExclusionGroups(String... groups) {
+        Preconditions.checkNotNull(groups, "Groups");
+        final TriggerOptions copy = new TriggerOptions(this);
+        copy.exclusionGroups = ImmutableSet.<String>builder().addAll(exclusionGroups).add(groups).build();
+        return copy;
+    }
+    
+    @Override
+    public String toString() {
+        return "TriggerOptions [timeout=" + timeout + ", name=" + name + 
+            ", group=" + group + ", tags=" + tags + ", exclusions=" + exclusions + 
+            ", misfirePolicy=" + misfirePolicy + ", bulkhead=" + bulkhead + 
+            ", highResolution=" + highResolution + ", tenant=" + tenant + 
+            ", exclusionGroups=" + exclusionGroups + "]";
+    }
+
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.quartz.CronExpression;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Static factory methods for {@link Trigger}s.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class Triggers {
+
+    private static final CronExpressionConverter CONVERTER = new CronExpressionConverter();
+    
+    /**
+     * Upper bound of exclusions skipped while looking for the next run.
+     */
+    private static final int MAX_SKIPS = 1000;
+    
+    private Triggers() {
+        
+    }
+    
+    /**
+     * Creates a {@link Trigger} which fires whenever the given cron expression is satisfied.
+     * The next run is computed relative to the start of the previous run.
+     * 
+     * @since 1.3
+     * @param expression the cron expression
+     * @return a new cron based trigger
+     * @throws NullPointerException if expression is null
+     */
+    public static Trigger cron(CronExpression expression) {
+        return new CronTrigger(expression);
+    }
+    
+    /**
+     * Creates a {@link Trigger} which fires whenever the given cron expression is satisfied.
+     * 
+     * @since 1.3
+     * @param expression the cron expression
+     * @return a new cron based trigger
+     * @throws NullPointerException if expression is null
+     * @throws IllegalArgumentException if expression is no valid cron expression
+     */
+    public static Trigger cron(String expression) {
+        Preconditions.checkNotNull(expression, "Expression");
+        return cron(CONVERTER.convert(expression, CronExpressionConverter.LITERAL));
+    }
+    
+    /**
+     * Creates a {@link Trigger} which fires periodically with the given period, relative
+     * to the scheduled time of the previous run. The first run happens one period
+     * from now. The next run time is computed using plain arithmetic, which makes
+     * this trigger suitable for high frequencies and sub-second periods.
+     * 
+     * @since 1.3
+     * @param period the period between two successive runs
+     * @param unit the unit of period
+     * @return a new fixed rate trigger
+     * @throws IllegalArgumentException if period is less than one millisecond
+     * @throws NullPointerException if unit is null
+     */
+    public static Trigger fixedRate(long period, TimeUnit unit) {
+        Preconditions.checkNotNull(unit, "Unit");
+        return new FixedRateTrigger(unit.toMillis(period));
+    }
+    
+    /**
+     * Creates a {@link Trigger} which fires with the given delay between the end of
+     * a run and the start of the next one. The first run happens one delay from now.
+     * 
+     * @since 1.3
+     * @param delay the delay between two successive runs
+     * @param unit the unit of delay
+     * @return a new fixed delay trigger
+     * @throws IllegalArgumentException if delay is less than one millisecond
+     * @throws NullPointerException if unit is null
+     */
+    public static Trigger fixedDelay(long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(unit, "Unit");
+        return new FixedDelayTrigger(unit.toMillis(delay));
+    }
+    
+    /**
+     * Creates a {@link Trigger} which behaves like the given trigger, but never fires
+     * during a time excluded by the specified calendar. Whenever a run would fall into an
+     * excluded range, the first run of the given trigger at or after the end of that range is used
+     * instead. Excluded runs are therefore skipped in one step per range rather than
+     * one step per run. Fixed rate triggers keep their phase, fixed delay triggers
+     * fire right at the end of the range.
+     * 
+     * @since 1.3
+     * @param trigger the trigger
+     * @param calendar the calendar of excluded time ranges
+     * @return a new trigger skipping all excluded runs
+     * @throws NullPointerException if trigger or calendar is null
+     */
+    public static Trigger excluding(Trigger trigger, ExclusionCalendar calendar) {
+        return new ExcludingTrigger(trigger, calendar);
+    }
+    
+    /**
+     * Provides the cron expression of the given trigger.
+     * 
+     * @param trigger the trigger
+     * @return the cron expression or null if trigger is not cron based
+     */
+    static CronExpression getExpression(Trigger trigger) {
+        if (trigger instanceof CronTrigger) {
+            return CronTrigger.class.cast(trigger).expression;
+        } else if (trigger instanceof ExcludingTrigger) {
+            return getExpression(ExcludingTrigger.class.cast(trigger).trigger);
+        } else {
+            return null;
+        }
+    }
+    
+    /**
+     * Provides the period of the given trigger.
+     * 
+     * @param trigger the trigger
+     * @return the period or delay in milliseconds or 0 if trigger is neither
+     *         fixed rate nor fixed delay
+     */
+    static long getPeriod(Trigger trigger) {
+        if (trigger instanceof FixedRateTrigger) {
+            return FixedRateTrigger.class.cast(trigger).period;
+        } else if (trigger instanceof FixedDelayTrigger) {
+            return FixedDelayTrigger.class.cast(trigger).delay;
+        } else if (trigger instanceof ExcludingTrigger) {
+            return getPeriod(ExcludingTrigger.class.cast(trigger).trigger);
+        } else {
+            return 0L;
+        }
+    }
+    
+    /**
+     * Cron expression based {@link Trigger}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class CronTrigger implements Trigger {
+        
+        private final CronExpression expression;
+        
+        public CronTrigger(CronExpression expression) {
+            this.expression = Preconditions.checkNotNull(expression, "Expression");
+        }
+        
+        @Override
+        public long first(long now) {
+            return nextAfter(now);
+        }
+        
+        @Override
+        public long next(long scheduled, long started, long finished) {
+            // relative to the slot, a late start must not skip the following slots
+            return nextAfter(scheduled);
+        }
+        
+        private long nextAfter(long time) {
+            final Date next = expression.getNextValidTimeAfter(new Date(time));
+            return next == null ? -1 : next.getTime();
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof CronTrigger) {
+                final CronTrigger other = CronTrigger.class.cast(that);
+                return expression.getCronExpression().equals(other.expression.getCronExpression());
+            } else {
+                return false;
+            }
+        }
+        
+        @Override
+        public int hashCode() {
+            return expression.getCronExpression().hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return expression.getCronExpression();
+        }
+        
+    }
+    
+    /**
+     * Fixed rate {@link Trigger}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class FixedRateTrigger implements Trigger {
+        
+        private final long period;
+        
+        public FixedRateTrigger(long period) {
+            Preconditions.checkArgument(period > 0, "Period must be at least one millisecond");
+            this.period = period;
+        }
+        
+        @Override
+        public long first(long now) {
+            return now + period;
+        }
+        
+        @Override
+        public long next(long scheduled, long started, long finished) {
+            return scheduled + period;
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            return that instanceof FixedRateTrigger && FixedRateTrigger.class.cast(that).period == period;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (int) (period ^ (period >>> 32));
+        }
+        
+        @Override
+        public String toString() {
+            return "every " + period + " ms";
+        }
+        
+    }
+    
+    /**
+     * Fixed delay {@link Trigger}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class FixedDelayTrigger implements Trigger {
+        
+        private final long delay;
+        
+        public FixedDelayTrigger(long delay) {
+            Preconditions.checkArgument(delay > 0, "Delay must be at least one millisecond");
+            this.delay = delay;
+        }
+        
+        @Override
+        public long first(long now) {
+            return now + delay;
+        }
+        
+        @Override
+        public long next(long scheduled, long started, long finished) {
+            return finished + delay;
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            return that instanceof FixedDelayTrigger && FixedDelayTrigger.class.cast(that).delay == delay;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (int) (delay ^ (delay >>> 32)) * 31;
+        }
+        
+        @Override
+        public String toString() {
+            return delay + " ms after each run";
+        }
+        
+    }
+    
+    /**
+     * {@link Trigger} decorator which skips runs excluded by an {@link ExclusionCalendar}.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class ExcludingTrigger implements Trigger {
+        
+        private final Trigger trigger;
+        
+        private final ExclusionCalendar calendar;
+        
+        public ExcludingTrigger(Trigger trigger, ExclusionCalendar calendar) {
+            this.trigger = Preconditions.checkNotNull(trigger, "Trigger");
+            this.calendar = Preconditions.checkNotNull(calendar, "Calendar");
+        }
+        
+        @Override
+        public long first(long now) {
+            return skip(trigger.first(now));
+        }
+        
+        @Override
+        public long next(long scheduled, long started, long finished) {
+            return skip(trigger.next(scheduled, started, finished));
+        }
+        
+        private long skip(long time) {
+            long candidate = time;
+            for (int i = 0; i < MAX_SKIPS && candidate != -1; i++) {
+                final long included = calendar.nextIncluded(candidate);
+                if (included == candidate) {
+                    return candidate;
+                } else if (included == -1) {
+                    return -1;
+                } else {
+                    candidate = atOrAfter(candidate, included);
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Computes the first run of the decorated trigger at or after the given time.
+         * 
+         * @param scheduled an excluded run of the decorated trigger
+         * @param time the end of the exclusion
+         * @return the first run at or after time
+         */
+        private long atOrAfter(long scheduled, long time) {
+            if (trigger instanceof FixedRateTrigger) {
+                // stay in phase with the original schedule
+                final long period = FixedRateTrigger.class.cast(trigger).period;
+                return scheduled + (time - scheduled + period - 1) / period * period;
+            } else if (trigger instanceof FixedDelayTrigger) {
+                // there is no previous run the delay could be relative to
+                return time;
+            } else {
+                return trigger.first(time - 1);
+            }
+        }
+        
+        @Override
+        public boolean equals(Object that) {
+            if (this == that) {
+                return true;
+            } else if (that instanceof ExcludingTrigger) {
+                final ExcludingTrigger other = ExcludingTrigger.class.cast(that);
+                return trigger.equals(other.trigger) && calendar.equals(other.calendar);
+            } else {
+                return false;
+            }
+        }
+        
+        @Override
+        public int hashCode() {
+            return trigger.hashCode() * 31 + calendar.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return trigger + " excluding " + calendar;
+        }
+        
+    }
+    
+}
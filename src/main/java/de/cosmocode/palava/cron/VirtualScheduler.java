@@ -0,0 +1,389 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A deterministic {@link ScheduledExecutorService} driven by a virtual {@link Clock}.
+ * Nothing happens until time is advanced using {@link #advance(long, TimeUnit)} or
+ * {@link #advanceTo(long)}, which run every due task in order of its scheduled time
+ * on the calling thread. Tasks scheduled by running tasks are picked up during the
+ * same advance, which allows tests to fast forward days of cron firings in milliseconds.
+ * Tasks may advance the time themselves, e.g. to simulate long running jobs.
+ *
+ * <p>
+ *   Use {@link VirtualSchedulerModule} to replace the {@link Cron} scheduler
+ *   and clock in an injector.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService, Clock {
+    
+    private final PriorityQueue<Task<?>> queue = new PriorityQueue<Task<?>>();
+    
+    private final List<Firing> firings = Lists.newArrayList();
+    
+    private long now;
+    
+    private long sequence;
+    
+    private boolean shutdown;
+    
+    /**
+     * Creates a new {@link VirtualScheduler} starting at the epoch.
+     *
+     * @since 1.3
+     */
+    public VirtualScheduler() {
+        this(0L);
+    }
+    
+    /**
+     * Creates a new {@link VirtualScheduler} starting at the specified time.
+     *
+     * @since 1.3
+     * @param start the initial virtual time in milliseconds since the epoch
+     */
+    public VirtualScheduler(long start) {
+        this.now = start;
+    }
+    
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+    
+    /**
+     * Advances the virtual time by the given duration and runs every task
+     * which becomes due on the way, in order.
+     *
+     * @since 1.3
+     * @param duration the duration to advance
+     * @param unit the unit of duration
+     * @return the number of executed tasks
+     * @throws IllegalArgumentException if duration is negative
+     * @throws NullPointerException if unit is null
+     */
+    public int advance(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "Duration must not be negative");
+        Preconditions.checkNotNull(unit, "Unit");
+        return advanceTo(currentTimeMillis() + unit.toMillis(duration));
+    }
+    
+    /**
+     * Advances the virtual time to the given point in time and runs every task
+     * which becomes due on the way, in order. The clock reflects the scheduled
+     * time of each task while it runs.
+     *
+     * @since 1.3
+     * @param time the target time in milliseconds since the epoch
+     * @return the number of executed tasks
+     * @throws IllegalArgumentException if time lies in the past
+     */
+    public int advanceTo(long time) {
+        synchronized (this) {
+            Preconditions.checkArgument(time >= now, "Can't go back in time from %s to %s", now, time);
+        }
+        int executed = 0;
+        while (true) {
+            final Task<?> task;
+            synchronized (this) {
+                task = queue.peek();
+                if (task == null || task.time > time) {
+                    // a task may have advanced the time beyond the target on its own
+                    now = Math.max(now, time);
+                    return executed;
+                }
+                queue.poll();
+                now = Math.max(now, task.time);
+                firings.add(new Firing(now, task.command));
+            }
+            task.run();
+            executed++;
+        }
+    }
+    
+    /**
+     * Runs all tasks which are due at the current virtual time.
+     *
+     * @since 1.3
+     * @return the number of executed tasks
+     */
+    public int runDue() {
+        return advanceTo(currentTimeMillis());
+    }
+    
+    /**
+     * Provides the number of pending tasks.
+     *
+     * @since 1.3
+     * @return the number of pending tasks
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+    
+    /**
+     * Provides all executions so far in order of execution.
+     *
+     * @since 1.3
+     * @return an immutable snapshot of all firings
+     */
+    public synchronized List<Firing> getFirings() {
+        return ImmutableList.copyOf(firings);
+    }
+    
+    /**
+     * Clears the recorded firings.
+     *
+     * @since 1.3
+     */
+    public synchronized void clearFirings() {
+        firings.clear();
+    }
+    
+    private synchronized <V> Task<V> enqueue(Task<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(this + " has been shut down");
+        }
+        queue.add(task);
+        return task;
+    }
+    
+    private synchronized long triggerTime(long delay, TimeUnit unit) {
+        return now + Math.max(0L, unit.toMillis(delay));
+    }
+    
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(command, "Command");
+        Preconditions.checkNotNull(unit, "Unit");
+        final Callable<Object> callable = Executors.callable(command);
+        return enqueue(new Task<Object>(command, callable, triggerTime(delay, unit), 0L));
+    }
+    
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        Preconditions.checkNotNull(callable, "Callable");
+        Preconditions.checkNotNull(unit, "Unit");
+        return enqueue(new Task<V>(null, callable, triggerTime(delay, unit), 0L));
+    }
+    
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Preconditions.checkNotNull(command, "Command");
+        Preconditions.checkArgument(period > 0, "Period must be positive");
+        final Callable<Object> callable = Executors.callable(command);
+        return enqueue(new Task<Object>(command, callable, triggerTime(initialDelay, unit), unit.toMillis(period)));
+    }
+    
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+        TimeUnit unit) {
+        Preconditions.checkNotNull(command, "Command");
+        Preconditions.checkArgument(delay > 0, "Delay must be positive");
+        final Callable<Object> callable = Executors.callable(command);
+        return enqueue(new Task<Object>(command, callable, triggerTime(initialDelay, unit), -unit.toMillis(delay)));
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0L, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Shuts this scheduler down. Pending tasks are discarded, because virtual
+     * time only advances on request.
+     */
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        queue.clear();
+    }
+    
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        final List<Runnable> pending = Lists.<Runnable>newArrayList(queue);
+        queue.clear();
+        return pending;
+    }
+    
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+    
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown;
+    }
+    
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return isTerminated();
+    }
+    
+    @Override
+    public String toString() {
+        return "VirtualScheduler [now=" + currentTimeMillis() + ", queued=" + getQueueSize() + "]";
+    }
+    
+    /**
+     * A single execution of a scheduled task at a virtual point in time.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    public static final class Firing {
+        
+        private final long time;
+        
+        private final Runnable command;
+        
+        private Firing(long time, Runnable command) {
+            this.time = time;
+            this.command = command;
+        }
+        
+        /**
+         * Provides the virtual time of this firing.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+        
+        /**
+         * Provides the executed command.
+         *
+         * @return the command or null if a {@link Callable} was executed
+         */
+        public Runnable getCommand() {
+            return command;
+        }
+        
+        @Override
+        public String toString() {
+            return "Firing [time=" + time + ", command=" + command + "]";
+        }
+    
+    }
+    
+    /**
+     * A queued task ordered by its scheduled time and submission order.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     * @param <V> the result type
+     */
+    private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        
+        private final Runnable command;
+        
+        private final long id;
+        
+        /**
+         * Positive for fixed rate, negative for fixed delay and 0 for one-shot tasks.
+         */
+        private final long period;
+        
+        private long time;
+        
+        public Task(Runnable command, Callable<V> callable, long time, long period) {
+            super(callable);
+            this.command = command;
+            this.time = time;
+            this.period = period;
+            synchronized (VirtualScheduler.this) {
+                this.id = sequence++;
+            }
+        }
+        
+        @Override
+        public void run() {
+            if (period == 0) {
+                super.run();
+            } else if (runAndReset()) {
+                synchronized (VirtualScheduler.this) {
+                    time = period > 0 ? time + period : now - period;
+                    if (!shutdown) {
+                        queue.add(this);
+                    }
+                }
+            }
+        }
+        
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (VirtualScheduler.this) {
+                    queue.remove(this);
+                }
+            }
+            return cancelled;
+        }
+        
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+        
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            } else if (other instanceof Task<?>) {
+                final Task<?> that = (Task<?>) other;
+                if (time == that.time) {
+                    return id < that.id ? -1 : 1;
+                } else {
+                    return time < that.time ? -1 : 1;
+                }
+            } else {
+                final long diff = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
+                return diff == 0 ? 0 : diff < 0 ? -1 : 1;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return "Task [time=" + time + ", command=" + command + "]";
+        }
+    
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Binder;
+import com.google.inject.Module;
+
+/**
+ * Binds the specified {@link VirtualScheduler} as {@link Cron} annotated
+ * {@link ScheduledExecutorService} and {@link Clock}. Replaces the
+ * {@link CronSchedulerModule} in tests.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class VirtualSchedulerModule implements Module {
+
+    private final VirtualScheduler scheduler;
+    
+    public VirtualSchedulerModule(VirtualScheduler scheduler) {
+        this.scheduler = Preconditions.checkNotNull(scheduler, "Scheduler");
+    }
+    
+    @Override
+    public void configure(Binder binder) {
+        binder.bind(ScheduledExecutorService.class).annotatedWith(Cron.class).toInstance(scheduler);
+        binder.bind(Clock.class).annotatedWith(Cron.class).toInstance(scheduler);
+    }
+
+}
@@ -0,0 +1,365 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import de.cosmocode.palava.core.lifecycle.Disposable;
+import de.cosmocode.palava.core.lifecycle.LifecycleException;
+
+/**
+ * A pool of daemon worker threads which performs scheduled runs,
+ * separated from the {@link Cron} scheduler which only keeps time. The pool uses
+ * one thread per available processor by default, which suits cpu bound jobs.
+ * The size can be changed using {@code cron.workers.size} or adapted to the
+ * current load by the {@link PoolTuner}.
+ *
+ * <p>
+ *   The pool measures the time runs spend waiting in its queue, the time spent running
+ *   and the peak number of busy workers per {@link #sample() sampling interval}.
+ *   Runs of tenants wait in the queues of the {@link FairDispatcher} instead, which
+ *   is why an {@link #attach(FairDispatcher) attached} dispatcher counts as part of the
+ *   queue and follows the size of this pool.
+ * </p>
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+final class WorkerPool extends ThreadPoolExecutor implements Disposable {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(WorkerPool.class);
+    
+    private final AtomicInteger busy = new AtomicInteger();
+    
+    private final AtomicLong growths = new AtomicLong();
+    
+    private final AtomicLong shrinks = new AtomicLong();
+    
+    private volatile Interval interval = new Interval(0);
+    
+    private volatile String decision;
+    
+    private volatile FairDispatcher dispatcher;
+    
+    @Inject
+    public WorkerPool() {
+        super(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+    }
+    
+    @Inject(optional = true)
+    void setSize(@Named(CronConfig.WORKERS_SIZE) int size) {
+        Preconditions.checkArgument(size > 0, "Size must be positive");
+        apply(size);
+    }
+    
+    private synchronized void apply(int size) {
+        if (size > getMaximumPoolSize()) {
+            setMaximumPoolSize(size);
+            setCorePoolSize(size);
+        } else {
+            setCorePoolSize(size);
+            setMaximumPoolSize(size);
+        }
+        final FairDispatcher current = dispatcher;
+        if (current != null) {
+            current.setConcurrency(size);
+        }
+    }
+    
+    /**
+     * Attaches the given dispatcher, whose concurrency follows the size of this
+     * pool from now on and whose queued runs are included in every {@link #sample()}.
+     *
+     * @param fairDispatcher the dispatcher handing runs of tenants over to this pool
+     * @throws NullPointerException if fairDispatcher is null
+     */
+    synchronized void attach(FairDispatcher fairDispatcher) {
+        this.dispatcher = Preconditions.checkNotNull(fairDispatcher, "FairDispatcher");
+        fairDispatcher.setConcurrency(getCorePoolSize());
+    }
+    
+    /**
+     * Changes the number of workers. Busy workers beyond the new size
+     * finish their current run before they terminate.
+     *
+     * @param size the new size
+     * @param reason the reason of this decision, exposed as {@link #getDecision()}
+     * @throws IllegalArgumentException if size is not positive
+     */
+    synchronized void resize(int size, String reason) {
+        Preconditions.checkArgument(size > 0, "Size must be positive");
+        final int current = getCorePoolSize();
+        if (size > current) {
+            growths.incrementAndGet();
+        } else if (size < current) {
+            shrinks.incrementAndGet();
+        } else {
+            return;
+        }
+        decision = "resized from " + current + " to " + size + " workers, " + reason;
+        LOG.info("{} {}", this, decision);
+        apply(size);
+    }
+    
+    @Override
+    public void execute(Runnable command) {
+        Preconditions.checkNotNull(command, "Command");
+        super.execute(new Queued(command));
+    }
+    
+    /**
+     * Takes a sample of the load since the last sample and starts a new interval.
+     *
+     * @return the load since the last sample
+     */
+    Load sample() {
+        final Interval previous = interval;
+        interval = new Interval(busy.get());
+        final long now = System.nanoTime();
+        final Runnable head = getQueue().peek();
+        final long age = head instanceof Queued ? now - Queued.class.cast(head).queuedAt : 0L;
+        final FairDispatcher current = dispatcher;
+        final int queued = getQueue().size() + (current == null ? 0 : current.getQueued());
+        final long oldest = Math.max(TimeUnit.NANOSECONDS.toMillis(age), 
+            current == null ? 0L : current.getOldestWait());
+        return new Load(getCorePoolSize(), queued, oldest,
+            previous.waits.getPercentile(99), previous.peak.get(),
+            TimeUnit.NANOSECONDS.toMillis(previous.running.get()),
+            TimeUnit.NANOSECONDS.toMillis(now - previous.startedAt));
+    }
+    
+    /**
+     * Provides the number of times the pool has been grown.
+     *
+     * @return the number of growths
+     */
+    long getGrowths() {
+        return growths.get();
+    }
+    
+    /**
+     * Provides the number of times the pool has been shrunk.
+     *
+     * @return the number of shrinks
+     */
+    long getShrinks() {
+        return shrinks.get();
+    }
+    
+    /**
+     * Provides the most recent resize decision.
+     *
+     * @return the decision or null if the pool has never been resized
+     */
+    String getDecision() {
+        return decision;
+    }
+    
+    @Override
+    public void dispose() throws LifecycleException {
+        shutdown();
+    }
+    
+    @Override
+    public String toString() {
+        return "WorkerPool [size=" + getCorePoolSize() + ", active=" + getActiveCount() + "]";
+    }
+    
+    /**
+     * Measurements of a single sampling interval.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class Interval {
+        
+        private final long startedAt = System.nanoTime();
+        
+        private final DurationSampler waits = new DurationSampler();
+        
+        private final AtomicInteger peak;
+        
+        private final AtomicLong running = new AtomicLong();
+        
+        public Interval(int busy) {
+            this.peak = new AtomicInteger(busy);
+        }
+        
+        public void busy(int current) {
+            while (true) {
+                final int max = peak.get();
+                if (current <= max || peak.compareAndSet(max, current)) {
+                    return;
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * A command waiting for a worker, which records its waiting and running time.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private final class Queued implements Runnable {
+        
+        private final Runnable command;
+        
+        private final long queuedAt = System.nanoTime();
+        
+        public Queued(Runnable command) {
+            this.command = command;
+        }
+        
+        @Override
+        public void run() {
+            final Interval current = interval;
+            final long startedAt = System.nanoTime();
+            current.waits.record(TimeUnit.NANOSECONDS.toMillis(startedAt - queuedAt));
+            current.busy(busy.incrementAndGet());
+            try {
+                command.run();
+            } finally {
+                busy.decrementAndGet();
+                current.running.addAndGet(System.nanoTime() - startedAt);
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return command.toString();
+        }
+        
+    }
+    
+    /**
+     * Immutable load of the pool during a single sampling interval.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    static final class Load {
+        
+        private final int size;
+        
+        private final int queued;
+        
+        private final long oldest;
+        
+        private final long p99Wait;
+        
+        private final int peakBusy;
+        
+        private final long running;
+        
+        private final long elapsed;
+        
+        Load(int size, int queued, long oldest, long p99Wait, int peakBusy, long running, long elapsed) {
+            this.size = size;
+            this.queued = queued;
+            this.oldest = oldest;
+            this.p99Wait = p99Wait;
+            this.peakBusy = peakBusy;
+            this.running = running;
+            this.elapsed = elapsed;
+        }
+        
+        public int getSize() {
+            return size;
+        }
+        
+        public int getQueued() {
+            return queued;
+        }
+        
+        /**
+         * Provides the longest time a run waited for a worker, which includes
+         * the run at the head of the queue, if any.
+         *
+         * @return the wait in milliseconds
+         */
+        public long getWait() {
+            return Math.max(oldest, p99Wait);
+        }
+        
+        public int getPeakBusy() {
+            return peakBusy;
+        }
+        
+        /**
+         * Provides the number of workers needed on average to perform the runs
+         * which finished during the interval, i.e. the total running time
+         * divided by the length of the interval.
+         *
+         * @return the average number of busy workers, rounded up
+         */
+        public int getAverageBusy() {
+            return elapsed <= 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, (running + elapsed - 1) / elapsed);
+        }
+        
+        /**
+         * Provides the estimated number of workers needed to keep up with the load,
+         * which covers the busy workers and the queued runs.
+         *
+         * @return the estimated demand
+         */
+        public int getDemand() {
+            return Math.max(peakBusy, getAverageBusy()) + queued;
+        }
+        
+        @Override
+        public String toString() {
+            return "Load [size=" + size + ", queued=" + queued + ", wait=" + getWait() + 
+                ", peakBusy=" + peakBusy + ", averageBusy=" + getAverageBusy() + "]";
+        }
+        
+    }
+    
+    /**
+     * Creates named daemon threads.
+     *
+     * @since 1.3
+     * @author Willi Schoenborn
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "cron-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    
+    }
+
+}
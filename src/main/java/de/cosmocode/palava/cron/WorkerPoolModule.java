@@ -0,0 +1,43 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.util.concurrent.Executor;
+
+import com.google.inject.Binder;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+
+/**
+ * Binds a fixed size pool of worker threads as {@link Cron} annotated {@link Executor},
+ * which separates the execution of all runs from the {@link Cron} scheduler.
+ * Bindings can choose a different pool using
+ * {@link TriggerBindingBuilder#executedBy(Class)}. Install the {@link PoolTunerModule}
+ * to adapt the size of the pool to the current load.
+ *
+ * @since 1.3
+ * @author Willi Schoenborn
+ */
+public final class WorkerPoolModule implements Module {
+    
+    @Override
+    public void configure(Binder binder) {
+        binder.bind(WorkerPool.class).in(Singleton.class);
+        binder.bind(Executor.class).annotatedWith(Cron.class).to(WorkerPool.class);
+    }
+
+}
@@ -18,6 +18,7 @@ package de.cosmocode.palava.cron;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -26,6 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Provider;
+import com.google.inject.util.Providers;
 
 /**
  * Tests {@link CronExpression}.
@@ -75,4 +79,55 @@ public final class CronExpressionTest implements Function<String, CronExpression
         apply("");
     }
     
+    /**
+     * Tests {@link ExpressionAnalysis} with an expression firing every quarter of an hour.
+     */
+    @Test
+    public void analyzeQuarterHourly() {
+        final ExpressionAnalysis unit = ExpressionAnalysis.of("0 0/15 * * * ?");
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(15), unit.getMinInterval());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(15), unit.getMaxInterval());
+        Assert.assertEquals(4, unit.getPeakFiringsPerHour());
+        Assert.assertEquals(96, unit.getFiringsPerDay());
+        Assert.assertTrue(unit.firesAt(45));
+        Assert.assertFalse(unit.firesAt(46));
+    }
+    
+    /**
+     * Tests {@link ExpressionAnalysis} with an expression firing on weekdays only.
+     */
+    @Test
+    public void analyzeWeekdays() {
+        final ExpressionAnalysis unit = ExpressionAnalysis.of("0 30 9,17 ? * MON-FRI");
+        Assert.assertEquals(TimeUnit.HOURS.toMillis(8), unit.getMinInterval());
+        Assert.assertEquals(TimeUnit.HOURS.toMillis(64), unit.getMaxInterval());
+        Assert.assertEquals(2, unit.getFiringsPerDay());
+        Assert.assertEquals(2.0 * 5 / 7, unit.getAverageFiringsPerDay(), 0.01);
+    }
+    
+    /**
+     * Tests {@link LoadForecast#of(Iterable)}.
+     */
+    @Test
+    public void forecast() {
+        final Provider<Runnable> command = Providers.<Runnable>of(new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+            
+        });
+        final LoadForecast unit = LoadForecast.of(ImmutableList.of(
+            TriggerBindings.of(command, "0 0 * * * ?", TriggerOptions.defaults()),
+            TriggerBindings.of(command, "0/10 0 * * * ?", TriggerOptions.defaults()),
+            TriggerBindings.of(command, Triggers.fixedRate(30, TimeUnit.SECONDS), TriggerOptions.defaults())
+        ));
+        Assert.assertEquals(9, unit.getFirings(60));
+        Assert.assertEquals(2, unit.getFirings(61));
+        Assert.assertEquals(9, unit.getPeak());
+        Assert.assertEquals(0, unit.getPeakMinute());
+        Assert.assertEquals(24, unit.getHotMinutes(8).size());
+    }
+    
 }
@@ -16,17 +16,35 @@
 
 package de.cosmocode.palava.cron;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 import org.quartz.CronExpression;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import com.google.inject.internal.Sets;
 
 import de.cosmocode.Holder;
@@ -87,4 +105,1562 @@ public final class DefaultCronServiceTest {
         Assert.assertTrue(holder.get());
     }
     
+    /**
+     * Tests {@link DefaultCronService#schedule(Runnable, String)} using a {@link VirtualScheduler}.
+     */
+    @Test
+    public void virtualTime() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<Long> fired = Lists.newArrayList();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.add(scheduler.currentTimeMillis());
+            }
+        
+        }, "0 * * * * ?");
+        
+        scheduler.advance(1, TimeUnit.DAYS);
+        Assert.assertEquals(24 * 60, fired.size());
+        for (int i = 0; i < fired.size(); i++) {
+            Assert.assertEquals(TimeUnit.MINUTES.toMillis(i + 1), fired.get(i).longValue());
+        }
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that runs falling into an excluded range are skipped.
+     */
+    @Test
+    public void exclusions() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<Long> fired = Lists.newArrayList();
+        final ExclusionCalendar maintenance = ExclusionCalendars.builder().
+            exclude(TimeUnit.MINUTES.toMillis(2), TimeUnit.MINUTES.toMillis(5)).build();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.add(scheduler.currentTimeMillis());
+            }
+        
+        }, Triggers.cron("0 * * * * ?"), TriggerOptions.defaults().withExclusions(maintenance));
+        
+        final List<Long> rate = Lists.newArrayList();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                rate.add(scheduler.currentTimeMillis());
+            }
+        
+        }, Triggers.fixedRate(90, TimeUnit.SECONDS), TriggerOptions.defaults().withExclusions(maintenance));
+        
+        final List<Long> delay = Lists.newArrayList();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                delay.add(scheduler.currentTimeMillis());
+            }
+        
+        }, Triggers.fixedDelay(90, TimeUnit.SECONDS), TriggerOptions.defaults().withExclusions(maintenance));
+        
+        scheduler.advance(1, TimeUnit.DAYS);
+        Assert.assertEquals(24 * 60 - 3, fired.size());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), fired.get(0).longValue());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(5), fired.get(1).longValue());
+        
+        // fixed rate runs keep their phase of 90 seconds
+        Assert.assertEquals(960 - 2, rate.size());
+        Assert.assertEquals(ImmutableList.of(90000L, 360000L, 450000L), rate.subList(0, 3));
+        
+        // fixed delay runs are postponed to the end of the exclusion
+        Assert.assertEquals(ImmutableList.of(90000L, 300000L, 390000L), delay.subList(0, 3));
+        unit.dispose();
+    }
+    
+    /**
+     * Tests {@link Triggers#fixedRate(long, TimeUnit)} with a sub-second period and runs taking
+     * some time, which must not shift the following runs.
+     */
+    @Test
+    public void fixedRate() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<Long> fired = Lists.newArrayList();
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.add(scheduler.currentTimeMillis());
+                scheduler.advance(100, TimeUnit.MILLISECONDS);
+            }
+        
+        }, Triggers.fixedRate(250, TimeUnit.MILLISECONDS), TriggerOptions.defaults());
+        
+        scheduler.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(ImmutableList.of(250L, 500L, 750L, 1000L), fired);
+        Assert.assertEquals(1250L, unit.getJob(id).getNextFireTime());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests {@link Triggers#fixedDelay(long, TimeUnit)} with runs taking some time, which
+     * delays every following run by the duration of the previous one.
+     */
+    @Test
+    public void fixedDelay() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<Long> fired = Lists.newArrayList();
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.add(scheduler.currentTimeMillis());
+                scheduler.advance(100, TimeUnit.MILLISECONDS);
+            }
+        
+        }, Triggers.fixedDelay(250, TimeUnit.MILLISECONDS), TriggerOptions.defaults());
+        
+        scheduler.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(ImmutableList.of(250L, 600L, 950L), fired);
+        Assert.assertEquals(1300L, unit.getJob(id).getNextFireTime());
+        Assert.assertEquals(0, unit.getJob(id).getMisfires());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests {@link DefaultCronService#scheduleAll(Iterable, TriggerOptions)} including the same task
+     * scheduled under two expressions and {@link DefaultCronService#cancelGroup(String)}.
+     */
+    @Test
+    public void scheduleAll() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final AtomicInteger first = new AtomicInteger();
+        final Runnable a = new Runnable() {
+            
+            @Override
+            public void run() {
+                first.incrementAndGet();
+            }
+        
+        };
+        final AtomicInteger second = new AtomicInteger();
+        final Runnable b = new Runnable() {
+            
+            @Override
+            public void run() {
+                second.incrementAndGet();
+            }
+        
+        };
+        final TriggerOptions options = TriggerOptions.defaults().withGroup("tenant");
+        
+        try {
+            unit.scheduleAll(ImmutableList.of(Maps.immutableEntry(a, "0 * * * * ?"), 
+                Maps.immutableEntry(b, "0 *")), options);
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(unit.getJobs().isEmpty());
+        }
+        
+        final List<String> ids = unit.scheduleAll(ImmutableList.of(
+            Maps.immutableEntry(a, "0 * * * * ?"),
+            Maps.immutableEntry(a, "30 * * * * ?"),
+            Maps.immutableEntry(b, "0 */2 * * * ?")
+        ), options);
+        Assert.assertEquals(3, ids.size());
+        Assert.assertEquals(ImmutableSet.copyOf(ids), unit.getGroup("tenant"));
+        
+        scheduler.advance(2, TimeUnit.MINUTES);
+        Assert.assertEquals(4, first.get());
+        Assert.assertEquals(1, second.get());
+        
+        Assert.assertEquals(3, unit.cancelGroup("tenant"));
+        Assert.assertEquals(0, unit.cancelGroup("tenant"));
+        Assert.assertTrue(unit.getGroup("tenant").isEmpty());
+        Assert.assertTrue(unit.getJobs().isEmpty());
+        scheduler.advance(2, TimeUnit.MINUTES);
+        Assert.assertEquals(4, first.get());
+        Assert.assertEquals(1, second.get());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests lookups by group and tag as well as pausing, resuming and cancelling the resulting ids.
+     */
+    @Test
+    public void groupsAndTags() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<String> fired = Lists.newArrayList();
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final String daily = unit.schedule(new Recorder(fired, "daily"), trigger, 
+            TriggerOptions.defaults().withGroup("reporting").withTags("db"));
+        final String weekly = unit.schedule(new Recorder(fired, "weekly"), trigger, 
+            TriggerOptions.defaults().withGroup("reporting").withTags("db", "slow"));
+        final String cleanup = unit.schedule(new Recorder(fired, "cleanup"), trigger, 
+            TriggerOptions.defaults().withGroup("maintenance").withTags("slow"));
+        
+        Assert.assertEquals(3, ImmutableSet.of(daily, weekly, cleanup).size());
+        Assert.assertEquals(ImmutableSet.of(daily, weekly), unit.getGroup("reporting"));
+        Assert.assertEquals(ImmutableSet.of(weekly, cleanup), unit.getTagged("slow"));
+        Assert.assertTrue(unit.getGroup("unknown").isEmpty());
+        
+        Assert.assertEquals(2, unit.pause(unit.getGroup("reporting")));
+        Assert.assertEquals(0, unit.pause(unit.getGroup("reporting")));
+        Assert.assertEquals(JobInfo.State.PAUSED, unit.getJob(daily).getState());
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(ImmutableList.of("cleanup"), fired);
+        
+        Assert.assertEquals(2, unit.resume(unit.getTagged("db")));
+        Assert.assertEquals(0, unit.resume(unit.getTagged("db")));
+        fired.clear();
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(ImmutableSet.of("daily", "weekly", "cleanup"), ImmutableSet.copyOf(fired));
+        
+        Assert.assertEquals(2, unit.cancel(unit.getTagged("slow")));
+        Assert.assertTrue(unit.getTagged("slow").isEmpty());
+        Assert.assertEquals(ImmutableSet.of(daily), unit.getGroup("reporting"));
+        Assert.assertNull(unit.getJob(weekly));
+        fired.clear();
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(ImmutableList.of("daily"), fired);
+        unit.dispose();
+    }
+    
+    /**
+     * Tests {@link DefaultCronService#getJobs()} and {@link DefaultCronService#fire(String)}.
+     */
+    @Test
+    public void management() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        
+        }, Triggers.fixedRate(1, TimeUnit.MINUTES), TriggerOptions.defaults().withName("failing"));
+        
+        final List<JobInfo> jobs = unit.getJobs();
+        Assert.assertEquals(1, jobs.size());
+        Assert.assertEquals("failing", jobs.get(0).getName());
+        Assert.assertEquals(JobInfo.State.SCHEDULED, jobs.get(0).getState());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), jobs.get(0).getNextFireTime());
+        
+        Assert.assertTrue(unit.fire(id));
+        scheduler.runDue();
+        final JobInfo job = unit.getJob(id);
+        Assert.assertEquals(1, job.getRuns());
+        Assert.assertEquals(1, job.getFailures());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(1), job.getNextFireTime());
+        Assert.assertEquals(1, unit.getEngineInfo().getJobs());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests {@link DefaultCronService#reschedule(String, String)} and {@link DefaultCronService#reload(Map)}
+     * with changed, unchanged and invalid expressions.
+     */
+    @Test
+    public void reload() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<String> fired = Lists.newArrayList();
+        final String report = unit.schedule(new Recorder(fired, "report"), Triggers.cron("0 * * * * ?"),
+            TriggerOptions.defaults().withName("report"));
+        final String cleanup = unit.schedule(new Recorder(fired, "cleanup"), Triggers.cron("0 0/2 * * * ?"),
+            TriggerOptions.defaults().withName("cleanup"));
+        
+        Assert.assertTrue(unit.reschedule(report, "0 0/5 * * * ?"));
+        Assert.assertFalse(unit.reschedule("unknown", "0 0/5 * * * ?"));
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(5), unit.getJob(report).getNextFireTime());
+        
+        final Map<String, String> expressions = Maps.newHashMap();
+        expressions.put("report", "0 0/10 * * * ?");
+        expressions.put("cleanup", "0 0/2 * * * ?");
+        Assert.assertEquals(1, unit.reload(expressions));
+        Assert.assertEquals("0 0/10 * * * ?", unit.getJob(report).getTrigger());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(10), unit.getJob(report).getNextFireTime());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(2), unit.getJob(cleanup).getNextFireTime());
+        Assert.assertEquals(0, unit.reload(expressions));
+        
+        expressions.put("report", "0 0/15 * * * ?");
+        expressions.put("cleanup", "invalid");
+        try {
+            unit.reload(expressions);
+            Assert.fail("Invalid expressions must be rejected");
+        } catch (IllegalArgumentException e) {
+            Assert.assertEquals("0 0/10 * * * ?", unit.getJob(report).getTrigger());
+        }
+        
+        scheduler.advance(10, TimeUnit.MINUTES);
+        Assert.assertEquals(5, Collections.frequency(fired, "cleanup"));
+        Assert.assertEquals(1, Collections.frequency(fired, "report"));
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that {@link ExpressionFileWatcher} reloads a changed file and retries
+     * an invalid file until it has been fixed, even if its modification time did not change.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void expressionFileWatcher() throws IOException {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final String report = unit.schedule(new Recorder(Lists.<String>newArrayList(), "report"),
+            Triggers.cron("0 * * * * ?"), TriggerOptions.defaults().withName("report"));
+        
+        final File file = File.createTempFile("cron", ".properties");
+        file.deleteOnExit();
+        final ExpressionFileWatcher watcher = new ExpressionFileWatcher(unit, scheduler, file.getPath());
+        watcher.setInterval(1);
+        watcher.setIntervalUnit(TimeUnit.MINUTES);
+        
+        Files.write("report=0 0/5 * * * ?\n", file, Charsets.ISO_8859_1);
+        Assert.assertTrue(file.setLastModified(1000L));
+        watcher.initialize();
+        scheduler.runDue();
+        Assert.assertEquals("0 0/5 * * * ?", unit.getJob(report).getTrigger());
+        
+        // unchanged files are not reloaded, even if the job has been changed in the meantime
+        Assert.assertTrue(unit.reschedule(report, "0 0/2 * * * ?"));
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals("0 0/2 * * * ?", unit.getJob(report).getTrigger());
+        
+        Files.write("report=invalid\n", file, Charsets.ISO_8859_1);
+        Assert.assertTrue(file.setLastModified(2000L));
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals("0 0/2 * * * ?", unit.getJob(report).getTrigger());
+        
+        // fixed within the resolution of the modification time
+        Files.write("report=0 0/10 * * * ?\n", file, Charsets.ISO_8859_1);
+        Assert.assertTrue(file.setLastModified(2000L));
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals("0 0/10 * * * ?", unit.getJob(report).getTrigger());
+        
+        // malformed escapes fail while loading, the watcher has to keep polling
+        Files.write("report=0 0/15 * * * ?\\u00\n", file, Charsets.ISO_8859_1);
+        Assert.assertTrue(file.setLastModified(3000L));
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals("0 0/10 * * * ?", unit.getJob(report).getTrigger());
+        Files.write("report=0 0/15 * * * ?\n", file, Charsets.ISO_8859_1);
+        Assert.assertTrue(file.setLastModified(4000L));
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals("0 0/15 * * * ?", unit.getJob(report).getTrigger());
+        
+        watcher.dispose();
+        unit.dispose();
+        Assert.assertTrue(file.delete());
+    }
+    
+    /**
+     * Tests that custom triggers receive the actual start and finish time of the previous run.
+     */
+    @Test
+    public void customTrigger() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        final List<Runnable> handedOver = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setExecutor(new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                handedOver.add(command);
+            }
+        
+        });
+        unit.initialize();
+        
+        final List<Long> arguments = Lists.newArrayList();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                scheduler.advance(2, TimeUnit.SECONDS);
+            }
+        
+        }, new Trigger() {
+            
+            @Override
+            public long first(long now) {
+                return now + TimeUnit.MINUTES.toMillis(1);
+            }
+            
+            @Override
+            public long next(long scheduled, long started, long finished) {
+                arguments.add(scheduled);
+                arguments.add(started);
+                arguments.add(finished);
+                return scheduled + TimeUnit.MINUTES.toMillis(1);
+            }
+        
+        }, TriggerOptions.defaults());
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        scheduler.advance(500, TimeUnit.MILLISECONDS);
+        handedOver.get(0).run();
+        Assert.assertEquals(ImmutableList.of(60000L, 60500L, 62500L), arguments);
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that a run exceeding its execution timeout is interrupted and that
+     * the next run starts after the interrupted one returned.
+     */
+    @Test
+    public void timeoutRespected() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final AtomicInteger interrupted = new AtomicInteger();
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                // the watchdog fires while the job is busy for 10 seconds
+                scheduler.advance(10, TimeUnit.SECONDS);
+                if (Thread.currentThread().isInterrupted()) {
+                    interrupted.incrementAndGet();
+                }
+            }
+        
+        }, Triggers.fixedRate(1, TimeUnit.MINUTES), TriggerOptions.defaults().withTimeout(5, TimeUnit.SECONDS));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(1, interrupted.get());
+        Assert.assertFalse("Interrupt leaked into the scheduling thread", Thread.currentThread().isInterrupted());
+        final JobInfo job = unit.getJob(id);
+        Assert.assertEquals(1, job.getRuns());
+        Assert.assertEquals(1, job.getOverruns());
+        Assert.assertEquals(JobInfo.State.SCHEDULED, job.getState());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(2), job.getNextFireTime());
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(2, unit.getJob(id).getRuns());
+        Assert.assertEquals(2, unit.getJob(id).getOverruns());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that a run ignoring its interrupt stays running and that no other run
+     * of the same job overlaps with it.
+     */
+    @Test
+    public void timeoutIgnored() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final List<JobInfo.State> states = Lists.newArrayList();
+        final String[] id = new String[1];
+        id[0] = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                if (running.getAndSet(true)) {
+                    overlaps.incrementAndGet();
+                    return;
+                }
+                // hangs for three periods, swallowing the interrupt of the watchdog
+                for (int i = 0; i < 180; i++) {
+                    scheduler.advance(1, TimeUnit.SECONDS);
+                    Thread.interrupted();
+                }
+                states.add(unit.getJob(id[0]).getState());
+                running.set(false);
+            }
+        
+        }, Triggers.fixedRate(1, TimeUnit.MINUTES), TriggerOptions.defaults().withTimeout(5, TimeUnit.SECONDS));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(0, overlaps.get());
+        Assert.assertEquals(ImmutableList.of(JobInfo.State.RUNNING), states);
+        final JobInfo job = unit.getJob(id[0]);
+        Assert.assertEquals(1, job.getRuns());
+        Assert.assertEquals(1, job.getOverruns());
+        // the slots passed while hanging are coalesced
+        Assert.assertEquals(2, job.getMisfires());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(4), job.getNextFireTime());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests the {@link MisfirePolicy misfire policies} after the clock jumped ahead, e.g. due to a long pause.
+     */
+    @Test
+    public void misfires() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final long[] pause = {0L};
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        unit.setClock(new Clock() {
+            
+            @Override
+            public long currentTimeMillis() {
+                return scheduler.currentTimeMillis() + pause[0];
+            }
+        
+        });
+        final List<String> misfired = Lists.newArrayList();
+        unit.setEventSink(new CronEventSink() {
+            
+            @Override
+            public void publish(CronEvent event) {
+                if (event.getType() == CronEvent.Type.MISFIRED) {
+                    misfired.add(event.getJobId());
+                }
+            }
+        
+        });
+        unit.initialize();
+        
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+        
+        };
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final TriggerOptions options = TriggerOptions.defaults();
+        final String coalesced = unit.schedule(task, trigger, options);
+        final String skipped = unit.schedule(task, trigger, options.withMisfirePolicy(MisfirePolicy.SKIP));
+        
+        final Trigger cron = Triggers.cron("0 * * * * ?");
+        final String cronCoalesced = unit.schedule(task, cron, options);
+        final String cronSkipped = unit.schedule(task, cron, options.withMisfirePolicy(MisfirePolicy.SKIP));
+        final String cronReplayed = unit.schedule(task, cron, options.withMisfirePolicy(MisfirePolicy.REPLAY));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        pause[0] = TimeUnit.MINUTES.toMillis(10);
+        scheduler.advance(1, TimeUnit.MINUTES);
+        // replays are one second apart
+        scheduler.advance(30, TimeUnit.SECONDS);
+        
+        // the overdue run and 9 missed runs
+        Assert.assertEquals(10, unit.getJob(coalesced).getMisfires());
+        Assert.assertEquals(10, unit.getJob(skipped).getMisfires());
+        // regular, overdue and caught up run
+        Assert.assertEquals(3, unit.getJob(coalesced).getRuns());
+        // regular and caught up run
+        Assert.assertEquals(2, unit.getJob(skipped).getRuns());
+        
+        // cron triggers count the missed slots relative to the overdue slot, not to the delayed start
+        Assert.assertEquals(10, unit.getJob(cronCoalesced).getMisfires());
+        Assert.assertEquals(3, unit.getJob(cronCoalesced).getRuns());
+        Assert.assertEquals(10, unit.getJob(cronSkipped).getMisfires());
+        Assert.assertEquals(2, unit.getJob(cronSkipped).getRuns());
+        
+        // regular, overdue and 10 replayed runs, the last one replayed 10 seconds after its slot
+        Assert.assertEquals(12, unit.getJob(cronReplayed).getRuns());
+        Assert.assertEquals(11, unit.getJob(cronReplayed).getMisfires());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(13), unit.getJob(cronReplayed).getNextFireTime());
+        
+        // only the overdue runs are reported, replayed runs are not late again
+        Assert.assertEquals(1, Collections.frequency(misfired, cronReplayed));
+        Assert.assertEquals(1, Collections.frequency(misfired, cronCoalesced));
+        Assert.assertEquals(5, misfired.size());
+        Assert.assertEquals(20 + 20 + 11, unit.getMisfires());
+        unit.dispose();
+    }
+    
+    /**
+     * Randomly interleaves firing, pausing and resuming of jobs with {@link DefaultCronService#dispose()}
+     * and verifies that no job is scheduled or running once dispose returned.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void disposeRace() throws InterruptedException {
+        final long seed = System.nanoTime();
+        final Random random = new Random(seed);
+        
+        for (int round = 0; round < 20; round++) {
+            final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(4);
+            final Set<TriggerBinding> bindings = Sets.newHashSet();
+            final DefaultCronService unit = unit(scheduler, bindings);
+            unit.initialize();
+            
+            final AtomicBoolean disposed = new AtomicBoolean();
+            final AtomicInteger violations = new AtomicInteger();
+            final Runnable task = new Runnable() {
+                
+                @Override
+                public void run() {
+                    if (disposed.get()) {
+                        violations.incrementAndGet();
+                    }
+                }
+            
+            };
+            
+            final List<String> ids = Lists.newArrayList();
+            for (int i = 0; i < 50; i++) {
+                final Trigger trigger = Triggers.fixedRate(1 + random.nextInt(3), TimeUnit.MILLISECONDS);
+                ids.add(unit.schedule(task, trigger, TriggerOptions.defaults()));
+            }
+            
+            final List<Thread> mutators = Lists.newArrayList();
+            for (int i = 0; i < 3; i++) {
+                final Thread mutator = new Thread(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        while (!disposed.get()) {
+                            final String id = ids.get(random.nextInt(ids.size()));
+                            switch (random.nextInt(3)) {
+                                case 0: {
+                                    unit.fire(id);
+                                    break;
+                                }
+                                case 1: {
+                                    unit.pause(ImmutableSet.of(id));
+                                    break;
+                                }
+                                default: {
+                                    unit.resume(ImmutableSet.of(id));
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                
+                });
+                mutators.add(mutator);
+                mutator.start();
+            }
+            
+            Thread.sleep(random.nextInt(20));
+            unit.dispose();
+            disposed.set(true);
+            
+            for (Runnable queued : scheduler.getQueue()) {
+                final Future<?> future = (Future<?>) queued;
+                Assert.assertTrue("Scheduled after dispose, seed " + seed, future.isDone());
+            }
+            
+            for (Thread mutator : mutators) {
+                mutator.join();
+            }
+            Thread.sleep(10);
+            Assert.assertEquals("Ran after dispose, seed " + seed, 0, violations.get());
+            scheduler.shutdownNow();
+        }
+    }
+    
+    /**
+     * Tests that the timer hands runs over to the configured executor.
+     */
+    @Test
+    public void executor() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        final List<Runnable> handedOver = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setExecutor(new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                handedOver.add(command);
+            }
+        
+        });
+        unit.initialize();
+        
+        final AtomicInteger runs = new AtomicInteger();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        
+        }, Triggers.fixedRate(1, TimeUnit.MINUTES), TriggerOptions.defaults());
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(1, handedOver.size());
+        Assert.assertEquals(0, runs.get());
+        
+        handedOver.get(0).run();
+        Assert.assertEquals(1, runs.get());
+        Assert.assertEquals(1, scheduler.getQueueSize());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that a saturated {@link Bulkhead} queues and skips runs of its members only.
+     */
+    @Test
+    public void bulkhead() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final Set<TriggerBinding> bindings = Sets.newHashSet();
+        final DefaultCronService unit = unit(scheduler, bindings);
+        final List<Runnable> handedOver = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setExecutor(new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                handedOver.add(command);
+            }
+        
+        });
+        unit.setBulkheads(ImmutableSet.of(new Bulkhead("reports", 1, 1)));
+        unit.initialize();
+        
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+        
+        };
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final TriggerOptions reports = TriggerOptions.defaults().withBulkhead("reports");
+        final String first = unit.schedule(task, trigger, reports);
+        unit.schedule(task, trigger, reports);
+        final String third = unit.schedule(task, trigger, reports);
+        unit.schedule(task, trigger, TriggerOptions.defaults());
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        // first report and the unlimited job, second report is queued, third one skipped
+        Assert.assertEquals(2, handedOver.size());
+        Assert.assertEquals(1, unit.getJob(third).getMisfires());
+        
+        handedOver.get(0).run();
+        Assert.assertEquals(1, unit.getJob(first).getRuns());
+        Assert.assertEquals(3, handedOver.size());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that named jobs are restored from the snapshot written on dispose.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void snapshot() throws IOException {
+        final File file = File.createTempFile("cron", ".snapshot");
+        Assert.assertTrue(file.delete());
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+        
+        };
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final TriggerOptions options = TriggerOptions.defaults().withName("cleanup");
+        
+        final VirtualScheduler before = new VirtualScheduler();
+        final DefaultCronService first = unit(before, Sets.<TriggerBinding>newHashSet());
+        first.setClock(before);
+        first.setSnapshotFile(file.getPath());
+        first.initialize();
+        first.schedule(task, trigger, options);
+        before.advance(3, TimeUnit.MINUTES);
+        first.dispose();
+        Assert.assertTrue(file.exists());
+        
+        final VirtualScheduler after = new VirtualScheduler(TimeUnit.MINUTES.toMillis(3));
+        final DefaultCronService second = unit(after, Sets.<TriggerBinding>newHashSet());
+        second.setClock(after);
+        second.setSnapshotFile(file.getPath());
+        second.initialize();
+        final String id = second.schedule(task, trigger, options);
+        final JobInfo job = second.getJob(id);
+        Assert.assertEquals(3, job.getRuns());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(4), job.getNextFireTime());
+        second.dispose();
+        Assert.assertTrue(file.delete());
+    }
+    
+    /**
+     * Tests that a restored next fire time excluded by a changed calendar is not used,
+     * even though the calendar's description did not change.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void snapshotChangedExclusions() throws IOException {
+        final File file = File.createTempFile("cron", ".snapshot");
+        Assert.assertTrue(file.delete());
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+        
+        };
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final ExclusionCalendar nightly = ExclusionCalendars.builder().
+            exclude(TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(20)).build();
+        final ExclusionCalendar maintenance = ExclusionCalendars.builder().
+            exclude(TimeUnit.SECONDS.toMillis(210), TimeUnit.SECONDS.toMillis(270)).build();
+        Assert.assertEquals(nightly.toString(), maintenance.toString());
+        
+        final VirtualScheduler before = new VirtualScheduler();
+        final DefaultCronService first = unit(before, Sets.<TriggerBinding>newHashSet());
+        first.setClock(before);
+        first.setSnapshotFile(file.getPath());
+        first.initialize();
+        first.schedule(task, trigger, TriggerOptions.defaults().withName("cleanup").withExclusions(nightly));
+        before.advance(3, TimeUnit.MINUTES);
+        first.dispose();
+        
+        final VirtualScheduler after = new VirtualScheduler(TimeUnit.MINUTES.toMillis(3));
+        final DefaultCronService second = unit(after, Sets.<TriggerBinding>newHashSet());
+        second.setClock(after);
+        second.setSnapshotFile(file.getPath());
+        second.initialize();
+        final String id = second.schedule(task, trigger,
+            TriggerOptions.defaults().withName("cleanup").withExclusions(maintenance));
+        final JobInfo job = second.getJob(id);
+        Assert.assertEquals(3, job.getRuns());
+        Assert.assertEquals(TimeUnit.MINUTES.toMillis(5), job.getNextFireTime());
+        second.dispose();
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Tests that {@link CronListener}s are notified asynchronously and isolated from each other.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void listeners() throws InterruptedException {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        final List<CronEvent.Type> types = Lists.newArrayList();
+        final CountDownLatch latch = new CountDownLatch(3);
+        unit.setClock(scheduler);
+        unit.setListeners(ImmutableSet.<CronListener>of(new AbstractCronListener() {
+            
+            @Override
+            public void beforeFire(CronEvent event) {
+                throw new IllegalStateException();
+            }
+            
+        }, new AbstractCronListener() {
+            
+            @Override
+            public void beforeFire(CronEvent event) {
+                record(event);
+            }
+            
+            @Override
+            public void afterFailure(CronEvent event) {
+                Assert.assertTrue(event.getThrowable() instanceof UnsupportedOperationException);
+                record(event);
+            }
+            
+            @Override
+            public void rescheduled(CronEvent event) {
+                record(event);
+            }
+            
+            private void record(CronEvent event) {
+                synchronized (types) {
+                    types.add(event.getType());
+                }
+                latch.countDown();
+            }
+            
+        }));
+        unit.initialize();
+        
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                throw new UnsupportedOperationException();
+            }
+        
+        }, Triggers.fixedRate(1, TimeUnit.MINUTES), TriggerOptions.defaults());
+        scheduler.advance(1, TimeUnit.MINUTES);
+        
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        synchronized (types) {
+            Assert.assertEquals(ImmutableList.of(
+                CronEvent.Type.FIRED, CronEvent.Type.FAILED, CronEvent.Type.RESCHEDULED
+            ), types);
+        }
+        unit.dispose();
+    }
+
+    /**
+     * Tests the jitter accounting of high resolution firing in virtual time. Every run takes
+     * 2 milliseconds longer than the period, hence every run falls behind its slot a bit further.
+     */
+    @Test
+    public void highResolution() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<Long> fired = Lists.newArrayList();
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.add(scheduler.currentTimeMillis());
+                scheduler.advance(7, TimeUnit.MILLISECONDS);
+            }
+        
+        }, Triggers.fixedRate(5, TimeUnit.MILLISECONDS), TriggerOptions.defaults().withHighResolution());
+        
+        scheduler.advance(70, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(ImmutableList.of(5L, 12L, 19L, 26L, 33L, 40L, 47L, 54L, 61L, 68L), fired);
+        final JobInfo job = unit.getJob(id);
+        Assert.assertEquals(10, job.getRuns());
+        Assert.assertEquals(0, job.getMisfires());
+        // 0, 2, 4, ..., 18 milliseconds
+        Assert.assertEquals(9000d, job.getMeanJitter(), 0.001d);
+        Assert.assertEquals(18000L, job.getP99Jitter());
+        unit.dispose();
+    }
+    
+    /**
+     * Smoke tests high resolution firing using the system clock.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void highResolutionSystemClock() throws InterruptedException {
+        final DefaultCronService unit = unit(Sets.<TriggerBinding>newHashSet());
+        final CountDownLatch latch = new CountDownLatch(10);
+        unit.initialize();
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        
+        }, Triggers.fixedRate(5, TimeUnit.MILLISECONDS), TriggerOptions.defaults().withHighResolution());
+        
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        unit.dispose();
+    }
+
+    /**
+     * Tests that a blocking high resolution job doesn't delay other high resolution
+     * jobs, because the precision timer only hands runs over to the scheduler.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void highResolutionBlocking() throws InterruptedException {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2);
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.initialize();
+        
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                blocking.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        
+        }, Triggers.fixedRate(5, TimeUnit.MILLISECONDS), TriggerOptions.defaults().withHighResolution());
+        Assert.assertTrue(blocking.await(1, TimeUnit.SECONDS));
+        
+        final CountDownLatch fired = new CountDownLatch(10);
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        
+        }, Triggers.fixedRate(5, TimeUnit.MILLISECONDS), TriggerOptions.defaults().withHighResolution());
+        
+        final boolean completed = fired.await(1, TimeUnit.SECONDS);
+        latch.countDown();
+        Assert.assertTrue("High resolution runs blocked by another job", completed);
+        // generous, the accuracy itself depends on the machine
+        Assert.assertTrue(unit.getJob(id).getP99Jitter() < TimeUnit.MILLISECONDS.toMicros(50));
+        unit.dispose();
+        scheduler.shutdownNow();
+    }
+    
+    /**
+     * Tests that a tenant with many simultaneous runs does not push out a smaller tenant.
+     */
+    @Test
+    public void tenants() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        final List<Runnable> handedOver = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setFairnessConcurrency(1);
+        unit.setExecutor(new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                handedOver.add(command);
+            }
+        
+        });
+        unit.initialize();
+        
+        final List<String> ran = Lists.newArrayList();
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        for (int i = 0; i < 4; i++) {
+            unit.schedule(new Recorder(ran, "big"), trigger, 
+                TriggerOptions.defaults().withTenant("big").withName("big-" + i));
+        }
+        unit.schedule(new Recorder(ran, "small"), trigger, 
+            TriggerOptions.defaults().withTenant("small").withName("small"));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(1, handedOver.size());
+        for (int i = 0; i < 5; i++) {
+            handedOver.get(i).run();
+        }
+        Assert.assertEquals(5, handedOver.size());
+        // round robin instead of first in first out
+        Assert.assertEquals(ImmutableList.of("big", "big", "small", "big", "big"), ran);
+        
+        final List<TenantInfo> tenants = unit.getTenants();
+        Assert.assertEquals(2, tenants.size());
+        for (TenantInfo tenant : tenants) {
+            Assert.assertEquals(0, tenant.getQueued());
+        }
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that runs of tenants are dispatched fairly using the scheduler if no executor is bound.
+     */
+    @Test
+    public void tenantsWithoutExecutor() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.initialize();
+        
+        final List<String> ran = Lists.newArrayList();
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        for (int i = 0; i < 4; i++) {
+            unit.schedule(new Recorder(ran, "big"), trigger, 
+                TriggerOptions.defaults().withTenant("big").withName("big-" + i));
+        }
+        unit.schedule(new Recorder(ran, "small"), trigger, 
+            TriggerOptions.defaults().withTenant("small").withName("small"));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(ImmutableList.of("big", "big", "small", "big", "big"), ran);
+        for (TenantInfo tenant : unit.getTenants()) {
+            Assert.assertEquals(0, tenant.getQueued());
+        }
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that tenants and bulkheads can't be combined.
+     */
+    @Test
+    public void tenantsAndBulkheads() {
+        try {
+            TriggerOptions.defaults().withBulkhead("io").withTenant("big");
+            Assert.fail("Tenants must not be combined with bulkheads");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            TriggerOptions.defaults().withTenant("big").withBulkhead("io");
+            Assert.fail("Bulkheads must not be combined with tenants");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+    
+    /**
+     * Tests that firings already recorded as completed are skipped, also across a restart
+     * of the {@link FileDedupStore}.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void firingTokens() throws IOException {
+        final File file = File.createTempFile("dedup", ".log");
+        file.deleteOnExit();
+        final FileDedupStore before = new FileDedupStore(file.getPath());
+        before.initialize();
+        before.complete(FiringToken.of("report", TimeUnit.MINUTES.toMillis(1)));
+        before.dispose();
+        final FileDedupStore store = new FileDedupStore(file.getPath());
+        store.initialize();
+        
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        final List<FiringToken> tokens = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setDedupStore(store);
+        unit.initialize();
+        
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+                tokens.add(FiringToken.current());
+            }
+        
+        };
+        final String id = unit.schedule(task, Triggers.fixedRate(1, TimeUnit.MINUTES), 
+            TriggerOptions.defaults().withName("report"));
+        scheduler.advance(2, TimeUnit.MINUTES);
+        
+        Assert.assertEquals(ImmutableList.of(FiringToken.of("report", TimeUnit.MINUTES.toMillis(2))), tokens);
+        Assert.assertEquals(1, unit.getJob(id).getRuns());
+        Assert.assertTrue(store.isCompleted(FiringToken.parse("report@" + TimeUnit.MINUTES.toMillis(2))));
+        Assert.assertNull(FiringToken.current());
+        unit.dispose();
+        store.dispose();
+    }
+    
+    /**
+     * Tests that a slow {@link DedupStore} doesn't block the job while it is consulted.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void firingTokensSlowStore() throws InterruptedException {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final DefaultCronService unit = unit(Sets.<TriggerBinding>newHashSet());
+        unit.setDedupStore(new DedupStore() {
+            
+            @Override
+            public boolean isCompleted(FiringToken token) {
+                entered.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+            
+            @Override
+            public boolean complete(FiringToken token) {
+                return true;
+            }
+        
+        });
+        unit.initialize();
+        
+        final AtomicInteger runs = new AtomicInteger();
+        final String id = unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        
+        }, Triggers.fixedRate(10, TimeUnit.MILLISECONDS), TriggerOptions.defaults().withName("report"));
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+        
+        final Thread pausing = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                unit.pause(ImmutableSet.of(id));
+            }
+        
+        });
+        pausing.start();
+        pausing.join(5000);
+        final boolean blocked = pausing.isAlive();
+        latch.countDown();
+        Assert.assertFalse("Pause blocked by the store", blocked);
+        
+        // the pending check lets its run happen, pausing only prevents the next one
+        unit.dispose();
+        Assert.assertEquals(1, runs.get());
+        Assert.assertEquals(JobInfo.State.PAUSED, unit.getJob(id).getState());
+    }
+    
+    /**
+     * Tests that runs completed before a restart of the service and its {@link FileDedupStore}
+     * are skipped afterwards and that unnamed jobs are rejected while a store is bound.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void firingTokensRestart() throws IOException {
+        final File file = File.createTempFile("dedup", ".log");
+        file.deleteOnExit();
+        final List<String> fired = Lists.newArrayList();
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final TriggerOptions options = TriggerOptions.defaults().withName("report");
+        
+        final FileDedupStore before = new FileDedupStore(file.getPath());
+        before.initialize();
+        final VirtualScheduler first = new VirtualScheduler();
+        final DefaultCronService service = unit(first, Sets.<TriggerBinding>newHashSet());
+        service.setClock(first);
+        service.setDedupStore(before);
+        service.initialize();
+        service.schedule(new Recorder(fired, "before"), trigger, options);
+        first.advance(2, TimeUnit.MINUTES);
+        service.dispose();
+        before.dispose();
+        Assert.assertEquals(ImmutableList.of("before", "before"), fired);
+        
+        // the same slots are due again after the restart, e.g. because the snapshot is older
+        final FileDedupStore after = new FileDedupStore(file.getPath());
+        after.initialize();
+        final VirtualScheduler second = new VirtualScheduler();
+        final DefaultCronService unit = unit(second, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(second);
+        unit.setDedupStore(after);
+        unit.initialize();
+        final String id = unit.schedule(new Recorder(fired, "after"), trigger, options);
+        second.advance(3, TimeUnit.MINUTES);
+        Assert.assertEquals(ImmutableList.of("before", "before", "after"), fired);
+        Assert.assertEquals(1, unit.getJob(id).getRuns());
+        
+        try {
+            unit.schedule(new Recorder(fired, "unnamed"), trigger, TriggerOptions.defaults());
+            Assert.fail("Unnamed jobs must be rejected while a DedupStore is bound");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        unit.dispose();
+        after.dispose();
+    }
+    
+    /**
+     * Tests that the {@link PoolTuner} grows the {@link WorkerPool} while runs queue up
+     * and shrinks it slowly once the pool is underutilized.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void poolTuning() throws InterruptedException {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final WorkerPool pool = new WorkerPool();
+        pool.setSize(1);
+        final PoolTuner unit = new PoolTuner(pool, scheduler, 4);
+        unit.initialize();
+        
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        for (int i = 0; i < 6; i++) {
+            pool.execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    running.incrementAndGet();
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            
+            });
+        }
+        Thread.sleep(200);
+        
+        // two overloaded samples per decision, each decision at most doubles the pool
+        scheduler.advance(10, TimeUnit.SECONDS);
+        Assert.assertEquals(1, pool.getCorePoolSize());
+        scheduler.advance(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, pool.getCorePoolSize());
+        scheduler.advance(20, TimeUnit.SECONDS);
+        Assert.assertEquals(4, pool.getCorePoolSize());
+        Assert.assertEquals(2, pool.getGrowths());
+        
+        // the added workers start asynchronously, the burst has to occupy all of them
+        while (running.get() < 4) {
+            Thread.sleep(10);
+        }
+        latch.countDown();
+        while (pool.getCompletedTaskCount() < 6) {
+            Thread.sleep(10);
+        }
+        
+        // the sample covering the burst and five idle samples
+        scheduler.advance(50, TimeUnit.SECONDS);
+        Assert.assertEquals(4, pool.getCorePoolSize());
+        scheduler.advance(10, TimeUnit.SECONDS);
+        Assert.assertEquals(3, pool.getCorePoolSize());
+        scheduler.advance(40, TimeUnit.SECONDS);
+        Assert.assertEquals(3, pool.getCorePoolSize());
+        Assert.assertEquals(1, pool.getShrinks());
+        Assert.assertNotNull(pool.getDecision());
+        
+        unit.dispose();
+        pool.dispose();
+    }
+    
+    /**
+     * Tests that runs of tenants waiting for the {@link FairDispatcher} let the {@link PoolTuner}
+     * grow the {@link WorkerPool} and that the dispatcher follows the new size.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void poolTuningTenants() throws InterruptedException {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final WorkerPool pool = new WorkerPool();
+        pool.setSize(1);
+        final PoolTuner tuner = new PoolTuner(pool, scheduler, 4);
+        tuner.initialize();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.setClock(scheduler);
+        unit.setExecutor(pool);
+        unit.initialize();
+        
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger started = new AtomicInteger();
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+                started.incrementAndGet();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        
+        };
+        for (int i = 0; i < 4; i++) {
+            unit.schedule(task, Triggers.fixedRate(5, TimeUnit.SECONDS), 
+                TriggerOptions.defaults().withTenant("big").withName("big-" + i));
+        }
+        
+        // the pool's own queue stays empty, all but one run wait for the dispatcher
+        scheduler.advance(5, TimeUnit.SECONDS);
+        Assert.assertEquals(0, pool.getQueue().size());
+        Assert.assertEquals(3, unit.getTenants().get(0).getQueued());
+        
+        scheduler.advance(15, TimeUnit.SECONDS);
+        Assert.assertEquals(2, pool.getCorePoolSize());
+        Assert.assertEquals(2, unit.getTenants().get(0).getQueued());
+        while (started.get() < 2) {
+            Thread.sleep(10);
+        }
+        
+        latch.countDown();
+        unit.dispose();
+        tuner.dispose();
+        pool.dispose();
+    }
+    
+    /**
+     * Tests that a run conflicting with a run of the same exclusion group is deferred
+     * without occupying a worker and started once the conflicting run finished.
+     */
+    @Test
+    public void exclusionGroups() {
+        final VirtualScheduler scheduler = new VirtualScheduler();
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        final List<Runnable> handedOver = Lists.newArrayList();
+        unit.setClock(scheduler);
+        unit.setExecutor(new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                handedOver.add(command);
+            }
+        
+        });
+        unit.initialize();
+        
+        final Runnable task = new Runnable() {
+            
+            @Override
+            public void run() {
+            
+            }
+        
+        };
+        final Trigger trigger = Triggers.fixedRate(1, TimeUnit.MINUTES);
+        final String rebuild = unit.schedule(task, trigger, 
+            TriggerOptions.defaults().withName("rebuild").withExclusionGroups("storage"));
+        final String backup = unit.schedule(task, trigger, 
+            TriggerOptions.defaults().withName("backup").withExclusionGroups("storage", "network"));
+        
+        scheduler.advance(1, TimeUnit.MINUTES);
+        Assert.assertEquals(1, handedOver.size());
+        final ExclusionGroupInfo waiting = find(unit.getExclusionGroups(), "storage");
+        Assert.assertTrue(waiting.isHeld());
+        Assert.assertEquals(1, waiting.getWaiting());
+        
+        scheduler.advance(5, TimeUnit.SECONDS);
+        handedOver.get(0).run();
+        Assert.assertEquals(2, handedOver.size());
+        handedOver.get(1).run();
+        
+        Assert.assertEquals(1, unit.getJob(rebuild).getRuns());
+        Assert.assertEquals(1, unit.getJob(backup).getRuns());
+        final ExclusionGroupInfo storage = find(unit.getExclusionGroups(), "storage");
+        Assert.assertFalse(storage.isHeld());
+        Assert.assertEquals(0, storage.getWaiting());
+        Assert.assertEquals(2, storage.getAcquired());
+        Assert.assertEquals(1, storage.getDeferred());
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(5), storage.getP99Wait());
+        Assert.assertFalse(find(unit.getExclusionGroups(), "network").isHeld());
+        unit.dispose();
+    }
+    
+    /**
+     * Tests that deferred runs are started by the scheduler rather than nested
+     * into the releasing run when no {@link Cron} executor is bound.
+     * 
+     * @throws InterruptedException should not happen
+     */
+    @Test
+    public void exclusionGroupsWithoutExecutor() throws InterruptedException {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(8);
+        final DefaultCronService unit = unit(scheduler, Sets.<TriggerBinding>newHashSet());
+        unit.initialize();
+        
+        final CountDownLatch blocking = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        unit.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                blocking.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        
+        }, Triggers.fixedDelay(50, TimeUnit.MILLISECONDS), 
+            TriggerOptions.defaults().withExclusionGroups("storage"));
+        
+        final List<Integer> depths = Collections.synchronizedList(Lists.<Integer>newArrayList());
+        final CountDownLatch finished = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            final AtomicBoolean first = new AtomicBoolean(true);
+            unit.schedule(new Runnable() {
+                
+                @Override
+                public void run() {
+                    if (first.getAndSet(false)) {
+                        depths.add(Thread.currentThread().getStackTrace().length);
+                        finished.countDown();
+                    }
+                }
+            
+            }, Triggers.fixedRate(100, TimeUnit.MILLISECONDS), 
+                TriggerOptions.defaults().withExclusionGroups("storage"));
+        }
+        
+        blocking.await();
+        while (find(unit.getExclusionGroups(), "storage").getWaiting() < 5) {
+            Thread.sleep(10);
+        }
+        latch.countDown();
+        Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+        
+        // every deferred run starts on a fresh scheduler thread stack
+        Assert.assertEquals(1, ImmutableSet.copyOf(depths).size());
+        unit.dispose();
+        scheduler.shutdownNow();
+    }
+    
+    private ExclusionGroupInfo find(List<ExclusionGroupInfo> groups, String name) {
+        for (ExclusionGroupInfo group : groups) {
+            if (group.getName().equals(name)) {
+                return group;
+            }
+        }
+        throw new AssertionError("No group " + name + " in " + groups);
+    }
+    
+    /**
+     * Records its name on every run.
+     *
+     * @author Willi Schoenborn
+     */
+    private static final class Recorder implements Runnable {
+        
+        private final List<String> fired;
+        
+        private final String name;
+        
+        public Recorder(List<String> fired, String name) {
+            this.fired = fired;
+            this.name = name;
+        }
+        
+        @Override
+        public void run() {
+            fired.add(name);
+        }
+        
+    }
+
 }
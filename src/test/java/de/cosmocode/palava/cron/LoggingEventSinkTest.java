@@ -0,0 +1,149 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * Tests {@link LoggingEventSink}.
+ *
+ * @author Willi Schoenborn
+ */
+public final class LoggingEventSinkTest {
+    
+    /**
+     * Creates a logger which records every log call as "method message" and
+     * every passed throwable.
+     */
+    private Logger recorder(final Set<String> enabled, final List<String> calls, final List<Throwable> throwables) {
+        return Logger.class.cast(Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {
+            Logger.class
+        }, new InvocationHandler() {
+            
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                final String name = method.getName();
+                if (name.startsWith("is") && name.endsWith("Enabled")) {
+                    return enabled.contains(name.substring(2, name.length() - 7).toLowerCase());
+                } else if (method.getReturnType() == void.class) {
+                    calls.add(name + " " + args[0]);
+                    if (args.length == 2 && args[1] instanceof Throwable) {
+                        throwables.add((Throwable) args[1]);
+                    }
+                    return null;
+                } else {
+                    return name.equals("getName") ? "recorder" : null;
+                }
+            }
+        
+        }));
+    }
+    
+    private CronEvent event(CronEvent.Type type, long run, Throwable throwable) {
+        return new CronEvent(type, "1", "job", run, 0L, 0L, throwable);
+    }
+    
+    /**
+     * Tests that events are logged on the configured level, only if that level is enabled,
+     * and that the throwable of a failure is passed on.
+     */
+    @Test
+    public void levels() {
+        final List<String> calls = Lists.newArrayList();
+        final List<Throwable> throwables = Lists.newArrayList();
+        final LoggingEventSink unit = new LoggingEventSink(
+            recorder(ImmutableSet.of("info", "warn"), calls, throwables));
+        
+        unit.publish(event(CronEvent.Type.FINISHED, 1, null));
+        Assert.assertTrue("debug is disabled", calls.isEmpty());
+        
+        unit.setLevel(LoggingEventSink.Level.INFO);
+        unit.publish(event(CronEvent.Type.FINISHED, 2, null));
+        Assert.assertEquals(ImmutableList.of("info cron event=FINISHED job=1 name=job run=2 value=0"), calls);
+        
+        unit.setLevel(LoggingEventSink.Level.WARN);
+        final Throwable failure = new IllegalStateException("failure");
+        unit.publish(event(CronEvent.Type.FAILED, 3, failure));
+        Assert.assertEquals("warn cron event=FAILED job=1 name=job run=3 value=0", calls.get(1));
+        Assert.assertEquals(ImmutableList.of(failure), throwables);
+        
+        unit.setLevel(LoggingEventSink.Level.ERROR);
+        unit.publish(event(CronEvent.Type.FAILED, 4, failure));
+        Assert.assertEquals(2, calls.size());
+    }
+    
+    /**
+     * Tests that only every n-th run is logged and that failures are never sampled.
+     */
+    @Test
+    public void sampling() {
+        final List<String> calls = Lists.newArrayList();
+        final List<Throwable> throwables = Lists.newArrayList();
+        final LoggingEventSink unit = new LoggingEventSink(recorder(ImmutableSet.of("debug"), calls, throwables));
+        unit.setSampleRate(3);
+        
+        for (long run = 1; run <= 9; run++) {
+            unit.publish(event(CronEvent.Type.FINISHED, run, null));
+        }
+        Assert.assertEquals(3, calls.size());
+        Assert.assertTrue(calls.get(0).endsWith("run=3 value=0"));
+        Assert.assertTrue(calls.get(2).endsWith("run=9 value=0"));
+        
+        unit.publish(event(CronEvent.Type.FAILED, 10, new IllegalStateException()));
+        Assert.assertEquals(4, calls.size());
+        Assert.assertEquals(1, throwables.size());
+    }
+    
+    /**
+     * Tests that events exceeding the rate limit are dropped and summarized in the next second.
+     */
+    @Test
+    public void rateLimit() {
+        final List<String> calls = Lists.newArrayList();
+        final List<Throwable> throwables = Lists.newArrayList();
+        final LoggingEventSink unit = new LoggingEventSink(
+            recorder(ImmutableSet.of("debug", "warn"), calls, throwables));
+        final VirtualScheduler clock = new VirtualScheduler(0L);
+        unit.setClock(clock);
+        unit.setRateLimit(2);
+        
+        for (long run = 1; run <= 5; run++) {
+            unit.publish(event(CronEvent.Type.FINISHED, run, null));
+        }
+        Assert.assertEquals(2, calls.size());
+        
+        clock.advance(1, TimeUnit.SECONDS);
+        unit.publish(event(CronEvent.Type.FINISHED, 6, null));
+        Assert.assertEquals(4, calls.size());
+        Assert.assertEquals("warn Dropped {} cron events due to a rate limit of {}/s", calls.get(2));
+        Assert.assertTrue(calls.get(3).endsWith("run=6 value=0"));
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2010 CosmoCode GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.cosmocode.palava.cron;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.inject.Guice;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+
+/**
+ * Tests {@link ScheduledProcessor} by compiling sources using the system {@link JavaCompiler}.
+ *
+ * @author Willi Schoenborn
+ */
+public final class ScheduledProcessorTest {
+    
+    private JavaCompiler compiler;
+    
+    private File output;
+    
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    
+    /**
+     * Creates the output directory.
+     * 
+     * @throws IOException should not happen
+     */
+    @Before
+    public void before() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        output = File.createTempFile("cron", ".classes");
+        Assert.assertTrue(output.delete());
+        Assert.assertTrue(output.mkdir());
+    }
+    
+    /**
+     * Deletes the output directory.
+     */
+    @After
+    public void after() {
+        if (output != null) {
+            delete(output);
+        }
+    }
+    
+    private void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        Assert.assertTrue(file.delete());
+    }
+    
+    private boolean compile(final String name, final String source) throws IOException {
+        final JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + 
+            JavaFileObject.Kind.SOURCE.extension), JavaFileObject.Kind.SOURCE) {
+            
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        
+        };
+        final StandardJavaFileManager manager = compiler.getStandardFileManager(diagnostics, null, Charsets.UTF_8);
+        try {
+            manager.setLocation(StandardLocation.CLASS_OUTPUT, ImmutableList.of(output));
+            manager.setLocation(StandardLocation.SOURCE_OUTPUT, ImmutableList.of(output));
+            final List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, manager, diagnostics, options, null, 
+                ImmutableList.of(unit));
+            task.setProcessors(ImmutableList.of(new ScheduledProcessor()));
+            return task.call().booleanValue();
+        } finally {
+            manager.close();
+        }
+    }
+    
+    private List<String> errors() {
+        final List<String> errors = Lists.newArrayList();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+    
+    /**
+     * Tests the generated index, its registration as a service and the generated
+     * bindings, including a method declaring {@link Throwable}.
+     * 
+     * @throws Exception should not happen
+     */
+    @Test
+    public void index() throws Exception {
+        final String source = 
+            "package example;\n" +
+            "\n" +
+            "import java.util.concurrent.TimeUnit;\n" +
+            "\n" +
+            "import de.cosmocode.palava.cron.Scheduled;\n" +
+            "\n" +
+            "public class Reports {\n" +
+            "\n" +
+            "    public static int calls;\n" +
+            "\n" +
+            "    @Scheduled(cron = \"0 0 * * * ?\", name = \"hourly\")\n" +
+            "    public static void hourly() {\n" +
+            "        calls++;\n" +
+            "    }\n" +
+            "\n" +
+            "    @Scheduled(fixedRate = 5, unit = TimeUnit.MINUTES, group = \"reports\")\n" +
+            "    void failing() throws Throwable {\n" +
+            "        throw new Throwable(\"failing\");\n" +
+            "    }\n" +
+            "\n" +
+            "}\n";
+        Assert.assertTrue(errors().toString(), compile("example.Reports", source));
+        
+        final File service = new File(output, "META-INF/services/" + ScheduledJobIndex.class.getName());
+        Assert.assertEquals(ImmutableList.of("example.Reports_ScheduledJobs"), 
+            Files.readLines(service, Charsets.UTF_8));
+        
+        final ClassLoader loader = new URLClassLoader(new URL[] {
+            output.toURI().toURL()
+        }, getClass().getClassLoader());
+        final Set<TriggerBinding> bindings = Guice.createInjector(new ScheduledJobModule(loader)).getInstance(
+            Key.get(new TypeLiteral<Set<TriggerBinding>>() { }));
+        final Map<String, ConfiguredTriggerBinding> named = Maps.newHashMap();
+        for (TriggerBinding binding : bindings) {
+            final ConfiguredTriggerBinding configured = TriggerBindings.configured(binding);
+            named.put(configured.getOptions().getName(), configured);
+        }
+        Assert.assertEquals(2, named.size());
+        
+        final ConfiguredTriggerBinding hourly = named.get("hourly");
+        Assert.assertEquals(Triggers.cron("0 0 * * * ?"), hourly.getTrigger());
+        hourly.getCommand().run();
+        Assert.assertEquals(1, loader.loadClass("example.Reports").getField("calls").getInt(null));
+        
+        final ConfiguredTriggerBinding failing = named.get("example.Reports#failing");
+        Assert.assertEquals("reports", failing.getOptions().getGroup());
+        Assert.assertEquals(Triggers.fixedRate(5, TimeUnit.MINUTES), failing.getTrigger());
+        try {
+            failing.getCommand().run();
+            Assert.fail("Expected the throwable to be rethrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failing", e.getCause().getMessage());
+        }
+    }
+    
+    /**
+     * Tests that invalid {@link Scheduled} methods are reported as compile errors.
+     * 
+     * @throws IOException should not happen
+     */
+    @Test
+    public void invalid() throws IOException {
+        final String source = 
+            "package example;\n" +
+            "\n" +
+            "import de.cosmocode.palava.cron.Scheduled;\n" +
+            "\n" +
+            "public class Invalid {\n" +
+            "\n" +
+            "    @Scheduled(cron = \"invalid\")\n" +
+            "    public void cron() {\n" +
+            "    }\n" +
+            "\n" +
+            "    @Scheduled(fixedRate = 1)\n" +
+            "    private void hidden() {\n" +
+            "    }\n" +
+            "\n" +
+            "    @Scheduled(fixedDelay = 1)\n" +
+            "    public void parameters(String value) {\n" +
+            "    }\n" +
+            "\n" +
+            "    @Scheduled(fixedRate = 1, fixedDelay = 1)\n" +
+            "    public void ambiguous() {\n" +
+            "    }\n" +
+            "\n" +
+            "}\n";
+        Assert.assertFalse(compile("example.Invalid", source));
+        Assert.assertEquals(ImmutableList.of(
+            "Invalid cron expression 'invalid'",
+            "@Scheduled methods must not be private",
+            "@Scheduled methods must not take any parameters",
+            "@Scheduled requires exactly one of cron, fixedRate and fixedDelay"
+        ), errors());
+        Assert.assertFalse(new File(output, "example/Invalid_ScheduledJobs.java").exists());
+    }
+
+}
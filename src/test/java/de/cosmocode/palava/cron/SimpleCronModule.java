@@ -16,6 +16,8 @@
 
 package de.cosmocode.palava.cron;
 
+import java.util.concurrent.TimeUnit;
+
 import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
@@ -32,6 +34,7 @@ public final class SimpleCronModule extends CronModule {
         schedule(Runnable.class).using("* 10 15 * * * 2010");
         schedule(Key.get(Runnable.class)).using(Names.named("my.cronExpression"));
         schedule(TypeLiteral.get(Runnable.class)).annotatedWith(Deprecated.class).using(Override.class);
+        schedule(Key.get(Runnable.class, Names.named("snapshot"))).atFixedRate(250, TimeUnit.MILLISECONDS);
     }
 
 }